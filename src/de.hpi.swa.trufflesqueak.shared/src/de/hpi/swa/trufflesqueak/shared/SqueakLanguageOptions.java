@@ -18,18 +18,32 @@ public final class SqueakLanguageOptions {
     public static final String IMAGE_PATH = "image-path";
     public static final String IMAGE_PATH_FLAG = "--" + IMAGE_PATH;
     public static final String IMAGE_PATH_HELP = "Path to image";
+    public static final String INSTANCE_REGISTRY = "instance-registry";
+    public static final String INSTANCE_REGISTRY_HELP = "Index instances per class on allocation to speed up allInstances and someInstance";
     public static final String INTERCEPT_MESSAGES = "intercept-messages";
     public static final String INTERCEPT_MESSAGES_HELP = "Comma-separated list of messages to intercept with an instrument";
     public static final String INTERRUPTS = "disable-interrupts";
     public static final String INTERRUPTS_FLAG = "--" + INTERRUPTS;
     public static final String INTERRUPTS_HELP = "Disable interrupt handler";
+    public static final String LAZY_METHOD_LOADING = "lazy-method-loading";
+    public static final String LAZY_METHOD_LOADING_HELP = "Materialize literals and bytecodes of compiled methods on first access";
     public static final String LOG_HANDLER_FLAG = "--log-handler";
     public static final String LOG_HANDLER_HELP = "Enable log handler (supported modes are 'mapped', 'file', 'err', 'out')";
+    public static final String PARALLEL_IMAGE_LOADING = "parallel-image-loading";
+    public static final String PARALLEL_IMAGE_LOADING_HELP = "Memory-map the image file and load its objects in parallel";
+    public static final String PARALLEL_IMAGE_WRITING = "parallel-image-writing";
+    public static final String PARALLEL_IMAGE_WRITING_HELP = "Serialize image snapshots in parallel into a memory-mapped file";
+    public static final String PARALLEL_OBJECT_TRACING = "parallel-object-tracing";
+    public static final String PARALLEL_OBJECT_TRACING_HELP = "Trace the object graph on multiple threads for become:, allObjects, and allInstances";
     public static final String PRINT_IMAGE_PATH_FLAG = "--print-image-path";
     public static final String PRINT_IMAGE_PATH_HELP = "Print the path to default Squeak/Smalltalk image";
     public static final String QUIET = "quiet";
     public static final String QUIET_FLAG = "--" + QUIET;
     public static final String QUIET_HELP = "Operate quietly";
+    public static final String RESOLVER_HOSTS_FILE = "resolver-hosts-file";
+    public static final String RESOLVER_HOSTS_FILE_HELP = "Hosts file to resolve names and addresses from before querying DNS";
+    public static final String SHARED_IMAGE_LOADING = "shared-image-loading";
+    public static final String SHARED_IMAGE_LOADING_HELP = "Share image data and method bytecodes with other contexts of this process that load the same image";
     public static final String SIGNAL_INPUT_SEMAPHORE = "signal-input-semaphore";
     public static final String SIGNAL_INPUT_SEMAPHORE_HELP = "Signal the input semaphore";
     public static final String STACK_DEPTH_PROTECTION = "stack-depth-protection";
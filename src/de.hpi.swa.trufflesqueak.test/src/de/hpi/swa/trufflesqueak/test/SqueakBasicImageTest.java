@@ -160,4 +160,128 @@ public class SqueakBasicImageTest extends AbstractSqueakTestCaseWithImage {
             }
         }
     }
+
+    @Test
+    public void test16ExceptionHandling() {
+        /* Handler contexts return to or resume escaped signal contexts, which must stay intact. */
+        assertEquals(4000L, evaluate("| count | count := 0. 1 to: 2000 do: [:i | " +
+                        "count := count + ([Error signal: 'returned'] on: Error do: [:e | e return: 1]). " +
+                        "count := count + ([Warning signal: 'resumed'. 1] on: Warning do: [:e | e resume: nil])]. count"));
+        assertEquals(3L, evaluate("[[Error signal: 'unhandled'] on: ZeroDivide do: [:e | 0]] on: Error do: [:e | e return: 3]"));
+    }
+
+    @Test
+    public void test17ProcessForkAndJoin() {
+        assertEquals(14L, evaluate("| done results | done := Semaphore new. results := OrderedCollection new.\n" +
+                        "1 to: 3 do: [:i | [results add: i * i. done signal] forkAt: Processor userBackgroundPriority].\n" +
+                        "3 timesRepeat: [done wait].\n" +
+                        "results inject: 0 into: [:sum :each | sum + each]"));
+    }
+
+    @Test
+    public void test18ProcessWaitingOnSemaphore() {
+        assertEquals(BooleanObject.TRUE, evaluate("| semaphore log | semaphore := Semaphore new. log := OrderedCollection new.\n" +
+                        "[log add: #waiting. semaphore wait. log add: #signaled] forkAt: Processor activePriority + 1.\n" +
+                        "log add: #signaling.\n" +
+                        "semaphore signal.\n" +
+                        "log asArray = #(#waiting #signaling #signaled)"));
+    }
+
+    @Test
+    public void test19ProcessLinkedByImageIsWokenByPriority() {
+        /* The image links the higher priority process into its ready queue without a primitive. */
+        assertEquals(BooleanObject.TRUE, evaluate("| log high list done | log := OrderedCollection new. done := Semaphore new.\n" +
+                        "high := [log add: #high] newProcess priority: Processor activePriority + 1; yourself.\n" +
+                        "list := Processor waitingProcessesAt: high priority.\n" +
+                        "list addLast: high. high instVarNamed: 'myList' put: list.\n" +
+                        "[log add: #low. done signal] forkAt: Processor activePriority - 1.\n" +
+                        "done wait.\n" +
+                        "log asArray = #(#high #low)"));
+    }
+
+    @Test
+    public void test20SharedImageLoading() {
+        final String method = "(Object >> #printString)";
+        final Context first = newImageContext(image.getImagePath(), SqueakLanguageOptions.SHARED_IMAGE_LOADING);
+        try {
+            final int originalByte;
+            try {
+                first.enter();
+                originalByte = first.eval(SqueakLanguageConfig.ID, method + " at: " + method + " endPC").asInt();
+                assertEquals("AsLowercase", first.eval(SqueakLanguageConfig.ID, "#asLowercase basicAt: 1 put: $A asInteger. #asLowercase asString").asString());
+                first.eval(SqueakLanguageConfig.ID, method + " at: " + method + " endPC put: " + (originalByte + 1) % 256);
+            } finally {
+                first.leave();
+            }
+            /* Contexts loaded from shared data must not see modifications of other contexts. */
+            final Context second = newImageContext(image.getImagePath(), SqueakLanguageOptions.SHARED_IMAGE_LOADING);
+            try {
+                second.enter();
+                assertEquals("asLowercase", second.eval(SqueakLanguageConfig.ID, "#asLowercase asString").asString());
+                assertEquals(originalByte, second.eval(SqueakLanguageConfig.ID, method + " at: " + method + " endPC").asInt());
+            } finally {
+                second.leave();
+                second.close();
+            }
+        } finally {
+            first.close();
+        }
+    }
+
+    @Test
+    public void test21ParallelLazyImageLoading() {
+        final String literals = "(Object >> #printString) literals size";
+        final Context loadingContext = newImageContext(image.getImagePath(), SqueakLanguageOptions.PARALLEL_IMAGE_LOADING, SqueakLanguageOptions.LAZY_METHOD_LOADING);
+        try {
+            loadingContext.enter();
+            /* Methods are materialized on first use and must match those loaded sequentially. */
+            assertEquals(evaluate(literals), loadingContext.eval(SqueakLanguageConfig.ID, literals).asLong());
+            assertEquals("#(1 2 3)", loadingContext.eval(SqueakLanguageConfig.ID, "#(3 1 2) asSortedCollection asArray printString").asString());
+        } finally {
+            loadingContext.leave();
+            loadingContext.close();
+        }
+    }
+
+    @Test
+    public void test22ParallelImageSnapshot() {
+        final String newImageName = "test22ParallelImageSnapshot.image";
+        final String newChangesName = "test22ParallelImageSnapshot.changes";
+        final TruffleFile newImageFile = image.env.getInternalTruffleFile(image.getImagePath()).getParent().resolve(newImageName);
+        final TruffleFile newChangesFile = image.env.getInternalTruffleFile(image.getImagePath()).getParent().resolve(newChangesName);
+        final Context writingContext = newImageContext(image.getImagePath(), SqueakLanguageOptions.PARALLEL_IMAGE_WRITING);
+        try {
+            writingContext.enter();
+            writingContext.eval(SqueakLanguageConfig.ID, "Smalltalk at: #ParallelSnapshotMarker put: 42");
+            writingContext.eval(SqueakLanguageConfig.ID, String.format("Smalltalk saveAs: '%s'", newImageName));
+        } finally {
+            writingContext.leave();
+            writingContext.close();
+        }
+        final Context newContext = newImageContext(newImageFile.getPath(), SqueakLanguageOptions.PARALLEL_IMAGE_LOADING);
+        try {
+            newContext.enter();
+            assertEquals(42, newContext.eval(SqueakLanguageConfig.ID, "Smalltalk at: #ParallelSnapshotMarker").asInt());
+            assertEquals(9, newContext.eval(SqueakLanguageConfig.ID, "1 + 2 * 3").asInt());
+        } finally {
+            newContext.leave();
+            newContext.close();
+            try {
+                newImageFile.delete();
+                newChangesFile.delete();
+            } catch (final IOException e) {
+                fail(e.getMessage());
+            }
+        }
+    }
+
+    /* Creates a headless context for the image with the given boolean options enabled. */
+    private static Context newImageContext(final String imagePath, final String... enabledOptions) {
+        final Context.Builder builder = Context.newBuilder(SqueakLanguageConfig.ID).allowAllAccess(true).option(SqueakLanguageConfig.ID + "." + SqueakLanguageOptions.IMAGE_PATH,
+                        imagePath).option(SqueakLanguageConfig.ID + "." + SqueakLanguageOptions.HEADLESS, "true");
+        for (final String option : enabledOptions) {
+            builder.option(SqueakLanguageConfig.ID + "." + option, "true");
+        }
+        return builder.build();
+    }
 }
@@ -39,6 +39,9 @@ import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectAt0Node;
 import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectSizeNode;
 
 public class SqueakBytecodeTest extends AbstractSqueakTestCaseWithDummyImage {
+    /* Number of pushConstant: 0/pop pairs that give a method more than 4096 bytecodes. */
+    private static final int HUGE_METHOD_PADDING = 2100;
+
     @Rule public ExpectedException exceptions = ExpectedException.none();
 
     @Test
@@ -652,6 +655,78 @@ public class SqueakBytecodeTest extends AbstractSqueakTestCaseWithDummyImage {
                         114, 172, 0x14, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x75, 0x7C));
     }
 
+    @Test
+    public void testLoop() {
+        final CompiledCodeObject method = makeMethod(new Object[]{makeHeader(0, 1, 0, false, false)}, loopBytecodes());
+        final ArrayObject[] shortChain = createChain(10);
+        assertSame(shortChain[shortChain.length - 1], runMethod(method, shortChain[0]));
+        // More back jumps than an activation takes before it continues in the loop node (OSR).
+        final ArrayObject[] longChain = createChain(5000);
+        assertSame(longChain[longChain.length - 1], runMethod(method, longChain[0]));
+        assertSame(shortChain[shortChain.length - 1], runMethod(method, shortChain[0]));
+    }
+
+    @Test
+    public void testHugeMethodLoop() {
+        // Same as loopBytecodes, with enough pushConstant: 0/pop pairs in front to make the method huge.
+        final int[] loop = loopBytecodes();
+        final int[] intBytes = new int[2 * HUGE_METHOD_PADDING + loop.length];
+        for (int i = 0; i < HUGE_METHOD_PADDING; i++) {
+            intBytes[2 * i] = 0x75;
+            intBytes[2 * i + 1] = 0x87;
+        }
+        System.arraycopy(loop, 0, intBytes, 2 * HUGE_METHOD_PADDING, loop.length);
+        final ArrayObject[] chain = createChain(2000);
+        final CompiledCodeObject method = makeMethod(new Object[]{makeHeader(0, 1, 0, false, false)}, intBytes);
+        assertSame(chain[chain.length - 1], runMethod(method, chain[0]));
+    }
+
+    @Test
+    public void testHugeMethodCallPrimitive() {
+        // callPrimitive 1 (SmallInteger>>#+), followed by padding and returnTop (the argument).
+        final int[] intBytes = new int[3 + 2 * HUGE_METHOD_PADDING + 2];
+        intBytes[0] = 139;
+        intBytes[1] = 1;
+        intBytes[2] = 0;
+        for (int i = 0; i < HUGE_METHOD_PADDING; i++) {
+            intBytes[3 + 2 * i] = 0x75;
+            intBytes[3 + 2 * i + 1] = 0x87;
+        }
+        intBytes[intBytes.length - 2] = 0x10;
+        intBytes[intBytes.length - 1] = 0x7C;
+        final CompiledCodeObject method = makeMethod(new Object[]{makeHeader(1, 1, 0, true, false)}, intBytes);
+        assertEquals(3L, runMethod(method, 1L, 2L));
+        final NativeObject argument = image.asByteString("foo");
+        assertEquals(argument, runMethod(method, 1L, argument));
+    }
+
+    /*
+     * Follows a chain of {next. hasNext} arrays, starting with the receiver, and returns the last
+     * element. Each element takes one back jump.
+     *
+     * 0 <70> pushReceiver
+     * 1 <68> popIntoTemp: 0
+     * 2 <8C 01 00> pushTemp: 1 inVectorAt: 0
+     * 5 <9D> jumpFalse: 12
+     * 6 <8C 00 00> pushTemp: 0 inVectorAt: 0
+     * 9 <68> popIntoTemp: 0
+     * 10 <A3 F6> jumpTo: 2
+     * 12 <10> pushTemp: 0
+     * 13 <7C> returnTop
+     */
+    private static int[] loopBytecodes() {
+        return new int[]{0x70, 0x68, 0x8C, 0x01, 0x00, 0x9D, 0x8C, 0x00, 0x00, 0x68, 0xA3, 0xF6, 0x10, 0x7C};
+    }
+
+    private static ArrayObject[] createChain(final int length) {
+        final ArrayObject[] chain = new ArrayObject[length];
+        chain[length - 1] = image.asArrayOfObjects(NilObject.SINGLETON, BooleanObject.FALSE);
+        for (int i = length - 2; i >= 0; i--) {
+            chain[i] = image.asArrayOfObjects(chain[i + 1], BooleanObject.TRUE);
+        }
+        return chain;
+    }
+
     // TODO: testSendSelector()
     // TODO: testSend()
 
@@ -5,15 +5,33 @@
  */
 package de.hpi.swa.trufflesqueak.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 
 import org.junit.Test;
 
+import de.hpi.swa.trufflesqueak.exceptions.SqueakExceptions.SqueakException;
 import de.hpi.swa.trufflesqueak.image.SqueakImageChunk;
+import de.hpi.swa.trufflesqueak.model.ArrayObject;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.FloatObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.model.NilObject;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.CONTEXT;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.AbstractBytecodeNode;
@@ -24,7 +42,15 @@ import de.hpi.swa.trufflesqueak.nodes.bytecodes.PushBytecodes.PushConstantNode.P
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.PushBytecodes.PushConstantNode.PushConstantOneNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.PushBytecodes.PushConstantNode.PushConstantTrueNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.ReturnBytecodes.ReturnReceiverNode;
+import de.hpi.swa.trufflesqueak.nodes.plugins.network.Resolver;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
+import de.hpi.swa.trufflesqueak.util.InstanceRegistry;
+import de.hpi.swa.trufflesqueak.util.MegamorphicSendCache;
+import de.hpi.swa.trufflesqueak.util.MethodCacheEntry;
+import de.hpi.swa.trufflesqueak.util.MiscUtils;
+import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils;
 import de.hpi.swa.trufflesqueak.util.SqueakBytecodeDecoder;
+import de.hpi.swa.trufflesqueak.util.SymbolTable;
 import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
 public class SqueakMiscellaneousTest extends AbstractSqueakTestCaseWithDummyImage {
@@ -206,6 +232,278 @@ public class SqueakMiscellaneousTest extends AbstractSqueakTestCaseWithDummyImag
         assertTrue(nan instanceof FloatObject && ((FloatObject) nan).isNaN());
     }
 
+    @Test
+    public void testSymbolTable() {
+        final SymbolTable table = new SymbolTable(image);
+        assertNull(table.lookup("fooBar:"));
+        final NativeObject symbol = asSymbol("fooBar:");
+        table.register(symbol);
+        assertSame(symbol, table.lookup("fooBar:"));
+        assertSame(symbol, table.lookup(MiscUtils.stringToBytes("fooBar:")));
+        assertNull(table.lookup("fooBar"));
+        assertNull(table.lookup("fooBar:\u0100"));
+
+        /* A second symbol with the same contents does not replace the first one. */
+        table.register(asSymbol("fooBar:"));
+        assertSame(symbol, table.lookup("fooBar:"));
+
+        /* Strings and other objects are not symbols. */
+        table.register(image.asByteString("aString"));
+        table.register(1L);
+        assertNull(table.lookup("aString"));
+
+        /* Symbols are found after the table has grown. */
+        final NativeObject[] symbols = new NativeObject[5000];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = asSymbol("symbol" + i);
+            table.register(symbols[i]);
+        }
+        for (int i = 0; i < symbols.length; i++) {
+            assertSame(symbols[i], table.lookup("symbol" + i));
+        }
+        assertSame(symbol, table.lookup("fooBar:"));
+    }
+
+    @Test
+    public void testFlushMethodCacheForMethod() {
+        final NativeObject selector = asSymbol("original");
+        final NativeObject alias = asSymbol("alias");
+        final CompiledCodeObject method = makeMethod(new Object[]{makeHeader(0, 0, 2, false, false), selector, nilClassBinding}, 0x78);
+        image.findMethodCacheEntry(image.nilClass, selector).setResult(method);
+        final MethodCacheEntry aliasEntry = image.findMethodCacheEntry(image.nilClass, alias);
+        aliasEntry.setResult(method);
+        assertSame(method, image.findMethodCacheEntry(image.nilClass, alias).getResult());
+
+        image.flushMethodCacheForMethod(method);
+        assertNull(aliasEntry.getResult());
+        assertNull(aliasEntry.getSelector());
+        assertNull(image.findMethodCacheEntry(image.nilClass, selector).getResult());
+        assertNull(image.findMethodCacheEntry(image.nilClass, alias).getResult());
+    }
+
+    @Test
+    public void testFlushMethodCacheAfterBecome() {
+        final NativeObject alias = asSymbol("becomeAlias");
+        final NativeObject unrelated = asSymbol("becomeUnrelated");
+        final CompiledCodeObject from = makeMethod(new Object[]{makeHeader(0, 0, 2, false, false), asSymbol("becomeFrom"), nilClassBinding}, 0x78);
+        final CompiledCodeObject to = makeMethod(new Object[]{makeHeader(0, 0, 2, false, false), asSymbol("becomeTo"), nilClassBinding}, 0x78);
+        final MethodCacheEntry fromEntry = image.findMethodCacheEntry(image.nilClass, alias);
+        fromEntry.setResult(from);
+        final MethodCacheEntry toEntry = image.findMethodCacheEntry(image.arrayClass, alias);
+        toEntry.setResult(to);
+        image.findMethodCacheEntry(image.nilClass, unrelated).setResult(image.arrayClass);
+
+        image.flushMethodCacheAfterBecome(new Object[]{from}, new Object[]{to});
+        assertNull(fromEntry.getResult());
+        assertNull(toEntry.getResult());
+        /* Swapping methods does not flush entries of other methods. */
+        assertSame(image.arrayClass, image.findMethodCacheEntry(image.nilClass, unrelated).getResult());
+    }
+
+    @Test
+    public void testMegamorphicSendCacheSharedBySelector() throws InterruptedException {
+        final NativeObject selector = asSymbol("megamorphic");
+        final MegamorphicSendCache[] caches = new MegamorphicSendCache[4];
+        final Thread[] threads = new Thread[caches.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> caches[index] = image.getMegamorphicSendCache(selector));
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        for (final MegamorphicSendCache cache : caches) {
+            assertSame(image.getMegamorphicSendCache(selector), cache);
+        }
+        assertNotSame(caches[0], image.getMegamorphicSendCache(asSymbol("otherMegamorphic")));
+    }
+
+    @Test
+    public void testPointersBecomeOneWay() {
+        final ArrayObject from = image.asArrayOfObjects(1L);
+        final ArrayObject to = image.asArrayOfObjects(2L);
+        final ArrayObject holder = image.asArrayOfObjects(from, NilObject.SINGLETON, from);
+        final Object[] specialObjects = image.specialObjectsArray.getObjectStorage();
+        final int index = specialObjects.length - 1;
+        assertNull(specialObjects[index]);
+        specialObjects[index] = holder; /* Make holder reachable. */
+        try {
+            ObjectGraphUtils.pointersBecomeOneWay(image, new ForwardingTable(new Object[]{from}, new Object[]{to}));
+        } finally {
+            specialObjects[index] = null;
+        }
+        assertSame(to, holder.getObject(0));
+        assertSame(NilObject.SINGLETON, holder.getObject(1));
+        assertSame(to, holder.getObject(2));
+    }
+
+    @Test
+    public void testForwardingTable() {
+        /* Small tables are searched linearly, large ones through a map, with the same results. */
+        for (final int padding : new int[]{0, 16}) {
+            final Object a = new Object();
+            final Object b = new Object();
+            final Object c = new Object();
+            final Object other = new Object();
+            /* A replacement replaced at a later index is forwarded again. */
+            final ForwardingTable later = new ForwardingTable(padded(padding, a, b), padded(padding, b, c));
+            assertSame(c, later.forward(a));
+            assertSame(c, later.forward(b));
+            assertSame(other, later.forward(other));
+            /* A replacement replaced at an earlier index is not. */
+            final ForwardingTable earlier = new ForwardingTable(padded(padding, b, a), padded(padding, c, b));
+            assertSame(b, earlier.forward(a));
+            assertSame(c, earlier.forward(b));
+            final Object[] pointers = {a, other, NilObject.SINGLETON, 1L};
+            earlier.forwardAll(pointers);
+            assertArrayEquals(new Object[]{b, other, NilObject.SINGLETON, 1L}, pointers);
+        }
+    }
+
+    private static Object[] padded(final int padding, final Object... pointers) {
+        final Object[] result = new Object[padding + pointers.length];
+        for (int i = 0; i < padding; i++) {
+            result[i] = new Object();
+        }
+        System.arraycopy(pointers, 0, result, padding, pointers.length);
+        return result;
+    }
+
+    @Test
+    public void testInstanceRegistry() {
+        final InstanceRegistry registry = new InstanceRegistry(image);
+        final ClassObject classObject = image.arrayClass;
+        assertTrue(registry.canTrack(classObject));
+        final ArrayObject unreachable = image.asArrayOfObjects(1L);
+        InstanceRegistry.register(unreachable);
+        assertNull("Classes are only indexed once enumerated", classObject.getRegisteredInstances());
+        try {
+            final Object[] traced = registry.allInstancesOf(classObject);
+            assertFalse(Arrays.asList(traced).contains(unreachable));
+            assertNotNull(classObject.getRegisteredInstances());
+            InstanceRegistry.register(unreachable);
+            assertEquals(traced.length + 1, registry.allInstancesOf(classObject).length);
+            /* A one-way become invalidates the classes of the replaced objects. */
+            registry.invalidateAfterBecome(new Object[]{unreachable});
+            assertNull(classObject.getRegisteredInstances());
+            assertEquals(traced.length, registry.allInstancesOf(classObject).length);
+        } finally {
+            registry.invalidate(classObject);
+        }
+    }
+
+    @Test
+    public void testDeclaredFieldAddressOfMissingField() {
+        try {
+            UnsafeUtils.getDeclaredFieldAddress(Object.class, "missingField");
+            fail("Missing field must not have an address");
+        } catch (final SqueakException e) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testResolverHostsFile() throws IOException {
+        final Path hostsFile = Files.createTempFile("hosts", null);
+        try {
+            Files.write(hostsFile, Arrays.asList(
+                            "# Comment only",
+                            "10.1.2.3 alpha alpha.local # Comment",
+                            "10.1.2.256 broken",
+                            "not.an.address beta",
+                            "::1 gamma",
+                            "10.1.2.4"), StandardCharsets.UTF_8);
+            final ArrayDeque<Runnable> lookups = new ArrayDeque<>();
+            final Resolver resolver = new Resolver(image, hostsFile.toString(), 2, 60_000, lookups::add);
+            resolver.startHostNameLookUp("alpha");
+            assertSame(Resolver.Status.Ready, resolver.getStatus());
+            assertArrayEquals(new byte[]{10, 1, 2, 3}, resolver.lastHostNameLookupResult());
+            resolver.startHostNameLookUp("alpha.local");
+            assertArrayEquals(new byte[]{10, 1, 2, 3}, resolver.lastHostNameLookupResult());
+            resolver.startAddressLookUp(new byte[]{10, 1, 2, 3});
+            assertEquals("alpha", resolver.lastAddressLookUpResult());
+            /* Malformed lines are skipped without aborting the parser. */
+            resolver.startHostNameLookUp("gamma");
+            assertSame(Resolver.Status.Ready, resolver.getStatus());
+            assertArrayEquals(InetAddress.getByName("::1").getAddress(), resolver.lastHostNameLookupResult());
+            assertTrue(lookups.isEmpty());
+            resolver.startHostNameLookUp("broken");
+            assertSame(Resolver.Status.Busy, resolver.getStatus());
+            resolver.abortLookup();
+        } finally {
+            Files.delete(hostsFile);
+        }
+    }
+
+    @Test
+    public void testResolverLookups() throws InterruptedException {
+        final ArrayDeque<Runnable> lookups = new ArrayDeque<>();
+        final Resolver resolver = new Resolver(image, "", 2, 200, lookups::add);
+        resolver.setSemaphoreIndex(42);
+        drainSemaphoresToSignal();
+
+        /* Completed lookups signal the resolver semaphore. */
+        resolver.startHostNameLookUp("10.0.0.1");
+        assertSame(Resolver.Status.Busy, resolver.getStatus());
+        assertNull(image.interrupt.nextSemaphoreToSignal());
+        lookups.remove().run();
+        assertSame(Resolver.Status.Ready, resolver.getStatus());
+        assertArrayEquals(new byte[]{10, 0, 0, 1}, resolver.lastHostNameLookupResult());
+        assertEquals(42, (int) image.interrupt.nextSemaphoreToSignal());
+
+        resolver.startHostNameLookUp("[not an address]");
+        assertSame(Resolver.Status.Busy, resolver.getStatus());
+        lookups.remove().run();
+        assertSame(Resolver.Status.Error, resolver.getStatus());
+        assertNull(resolver.lastHostNameLookupResult());
+        assertEquals(42, (int) image.interrupt.nextSemaphoreToSignal());
+
+        /* Aborted lookups neither publish their result nor signal. */
+        resolver.startHostNameLookUp("10.0.0.2");
+        resolver.abortLookup();
+        assertSame(Resolver.Status.Ready, resolver.getStatus());
+        lookups.remove().run();
+        assertNull(resolver.lastHostNameLookupResult());
+        assertNull(image.interrupt.nextSemaphoreToSignal());
+
+        /* Cached results are answered right away. */
+        resolver.startHostNameLookUp("10.0.0.1");
+        assertSame(Resolver.Status.Ready, resolver.getStatus());
+        assertArrayEquals(new byte[]{10, 0, 0, 1}, resolver.lastHostNameLookupResult());
+        assertTrue(lookups.isEmpty());
+
+        /* The least recently used result is evicted. */
+        resolver.startHostNameLookUp("10.0.0.3");
+        lookups.remove().run();
+        resolver.startHostNameLookUp("10.0.0.2");
+        assertSame(Resolver.Status.Busy, resolver.getStatus());
+        lookups.remove().run();
+        resolver.startHostNameLookUp("10.0.0.3");
+        assertSame(Resolver.Status.Ready, resolver.getStatus());
+        resolver.startHostNameLookUp("10.0.0.1");
+        assertSame(Resolver.Status.Busy, resolver.getStatus());
+        lookups.remove().run();
+
+        /* Results expire. */
+        Thread.sleep(300);
+        resolver.startHostNameLookUp("10.0.0.1");
+        assertSame(Resolver.Status.Busy, resolver.getStatus());
+        lookups.remove().run();
+        assertArrayEquals(new byte[]{10, 0, 0, 1}, resolver.lastHostNameLookupResult());
+        drainSemaphoresToSignal();
+    }
+
+    private static void drainSemaphoresToSignal() {
+        while (image.interrupt.nextSemaphoreToSignal() != null) {
+            // Poll until empty.
+        }
+    }
+
+    private static NativeObject asSymbol(final String value) {
+        return NativeObject.newNativeBytes(image, image.getByteSymbolClass(), MiscUtils.stringToBytes(value));
+    }
+
     private static SqueakImageChunk newFloatChunk(final byte[] data) {
         final SqueakImageChunk chunk = new SqueakImageChunk(
                         null,
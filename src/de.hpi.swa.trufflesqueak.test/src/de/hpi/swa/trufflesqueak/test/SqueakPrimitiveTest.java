@@ -5,13 +5,25 @@
  */
 package de.hpi.swa.trufflesqueak.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.junit.Test;
 
@@ -19,8 +31,11 @@ import de.hpi.swa.trufflesqueak.interop.WrapToSqueakNode;
 import de.hpi.swa.trufflesqueak.model.AbstractSqueakObject;
 import de.hpi.swa.trufflesqueak.model.ArrayObject;
 import de.hpi.swa.trufflesqueak.model.BooleanObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.LargeIntegerObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.model.NilObject;
+import de.hpi.swa.trufflesqueak.nodes.plugins.network.SocketReactor;
 
 public class SqueakPrimitiveTest extends AbstractSqueakTestCaseWithDummyImage {
     @Test
@@ -79,4 +94,208 @@ public class SqueakPrimitiveTest extends AbstractSqueakTestCaseWithDummyImage {
         assertEquals(wrapNode.executeWrap(Long.MAX_VALUE),
                         runBinaryPrimitive(22, wrapNode.executeWrap(new LargeIntegerObject(image, BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE))), wrapNode.executeWrap(1L)));
     }
+
+    @Test
+    public void testSocketSendAndReceiveDataAtOffset() throws IOException, InterruptedException {
+        try (DatagramChannel peer = openPeer()) {
+            final Object socket = connectUDPSocket(peer);
+            final byte[] bytes = new byte[60_000];
+            bytes[2] = 42;
+            bytes[bytes.length - 1] = 7;
+            /* A datagram is sent at once, so the send is done right away. */
+            assertEquals(bytes.length - 2L, runSocketPrimitive("primitiveSocketSendDataBufCount", socket, image.asByteArray(bytes), 3L, bytes.length - 2L));
+            assertTrue((boolean) runSocketPrimitive("primitiveSocketSendDone", socket));
+            final ByteBuffer received = ByteBuffer.allocate(bytes.length);
+            peer.configureBlocking(true);
+            peer.receive(received);
+            assertEquals(bytes.length - 2, received.position());
+            assertEquals(42, received.get(0));
+
+            final long port = (long) runSocketPrimitive("primitiveSocketLocalPort", socket);
+            peer.send(ByteBuffer.wrap(new byte[]{1, 2, 3}), new InetSocketAddress(InetAddress.getLoopbackAddress(), (int) port));
+            final long deadline = System.currentTimeMillis() + 5_000;
+            while (!(boolean) runSocketPrimitive("primitiveSocketReceiveDataAvailable", socket)) {
+                assertTrue("Datagram did not arrive", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            final NativeObject buffer = image.asByteArray(new byte[8]);
+            assertEquals(3L, runSocketPrimitive("primitiveSocketReceiveDataBufCount", socket, buffer, 5L, 4L));
+            assertArrayEquals(new byte[]{0, 0, 0, 0, 1, 2, 3, 0}, buffer.getByteStorage());
+            runSocketPrimitive("primitiveSocketDestroy", socket);
+        }
+    }
+
+    @Test
+    public void testSocketReceiveAfterEndOfStream() throws IOException, InterruptedException {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final Object socket = runSocketPrimitive("primitiveSocketCreate3Semaphores", 0L, 0L, 0L, 0L, 0L, 0L);
+            final long port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            runSocketPrimitive("primitiveSocketConnectToPort", socket, image.asByteArray(InetAddress.getLoopbackAddress().getAddress()), port);
+            server.accept().close();
+            final long deadline = System.currentTimeMillis() + 5_000;
+            /* Querying the status completes the connection. */
+            while (!runSocketPrimitive("primitiveSocketConnectionStatus", socket).equals(2L) || !(boolean) runSocketPrimitive("primitiveSocketReceiveDataAvailable", socket)) {
+                assertTrue("End of stream was not reported", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            assertEquals(0L, runSocketPrimitive("primitiveSocketReceiveDataBufCount", socket, image.asByteArray(new byte[8]), 1L, 8L));
+            assertEquals(3L, runSocketPrimitive("primitiveSocketConnectionStatus", socket));
+            /* The reactor must not report the closed stream again. */
+            Thread.sleep(100);
+            assertFalse((boolean) runSocketPrimitive("primitiveSocketReceiveDataAvailable", socket));
+            runSocketPrimitive("primitiveSocketDestroy", socket);
+        }
+    }
+
+    @Test
+    public void testIdentityScanFor() {
+        final ArrayObject set = image.asArrayOfObjects(image.nilClass, image.arrayClass, NilObject.SINGLETON, image.metaClass);
+        assertEquals(2L, runIdentityScan("primitiveIdentityScanFor", set, image.arrayClass, 1L));
+        /* Probing wraps around to the first empty slot. */
+        assertEquals(3L, runIdentityScan("primitiveIdentityScanFor", set, image.smallIntegerClass, 4L));
+        assertSame(NilObject.SINGLETON, runIdentityScan("primitiveIdentityScanFor", set, image.arrayClass, 5L));
+        assertSame(NilObject.SINGLETON, runIdentityScan("primitiveIdentityScanFor", image.asArrayOfObjects(image.nilClass, image.arrayClass), image.metaClass, 1L));
+
+        final ArrayObject longs = image.asArrayOfLongs(1L, 2L, 3L);
+        assertEquals(2L, runIdentityScan("primitiveIdentityScanFor", longs, 2L, 3L));
+        assertSame(NilObject.SINGLETON, runIdentityScan("primitiveIdentityScanFor", longs, 5L, 1L));
+        assertEquals(3L, runIdentityScan("primitiveIdentityScanFor", image.asArrayOfObjects(image.nilClass, 6L, 7L), 7L, 1L));
+    }
+
+    @Test
+    public void testIdentityScanForKey() {
+        final Object key = nilClassBinding.instVarAt0Slow(0);
+        final ArrayObject dictionary = image.asArrayOfObjects(NilObject.SINGLETON, nilClassBinding);
+        assertEquals(2L, runIdentityScan("primitiveIdentityScanForKey", dictionary, key, 2L));
+        assertEquals(1L, runIdentityScan("primitiveIdentityScanForKey", dictionary, image.arrayClass, 2L));
+        assertSame(NilObject.SINGLETON, runIdentityScan("primitiveIdentityScanForKey", image.asArrayOfObjects(nilClassBinding), image.arrayClass, 1L));
+        /* Elements must be associations. */
+        assertSame(NilObject.SINGLETON, runIdentityScan("primitiveIdentityScanForKey", image.asArrayOfObjects(image.nilClass, NilObject.SINGLETON), key, 1L));
+    }
+
+    @Test
+    public void testSocketSendDataManyValidatesBeforeSending() throws IOException {
+        try (DatagramChannel peer = openPeer()) {
+            final Object socket = connectUDPSocket(peer);
+            final NativeObject data = image.asByteArray(new byte[]{1, 2, 3});
+            /* The second start index is out of bounds, so the first socket must not send either. */
+            assertSame(NilObject.SINGLETON, runSocketPrimitive("primitiveSocketSendDataMany", image.asArrayOfObjects(socket, socket), image.asArrayOfObjects(data, data),
+                            image.asArrayOfObjects(1L, 5L)));
+            assertSame(NilObject.SINGLETON, runSocketPrimitive("primitiveSocketSendDataMany", image.asArrayOfObjects(socket, NilObject.SINGLETON), image.asArrayOfObjects(data, data),
+                            image.asArrayOfObjects(1L, 1L)));
+            assertNull(peer.receive(ByteBuffer.allocate(8)));
+
+            final ArrayObject counts = (ArrayObject) runSocketPrimitive("primitiveSocketSendDataMany", image.asArrayOfObjects(socket), image.asArrayOfObjects(data), image.asArrayOfObjects(2L));
+            assertEquals(2L, counts.getLong(0));
+            final ByteBuffer received = ByteBuffer.allocate(8);
+            peer.configureBlocking(true);
+            peer.receive(received);
+            assertEquals(2, received.position());
+            runSocketPrimitive("primitiveSocketDestroy", socket);
+        }
+    }
+
+    @Test
+    public void testSocketReceiveDataManyValidatesBeforeReceiving() throws IOException, InterruptedException {
+        try (DatagramChannel peer = openPeer()) {
+            final Object socket = connectUDPSocket(peer);
+            final long port = (long) runSocketPrimitive("primitiveSocketLocalPort", socket);
+            peer.send(ByteBuffer.wrap(new byte[]{1, 2, 3}), new InetSocketAddress(InetAddress.getLoopbackAddress(), (int) port));
+            final NativeObject buffer = image.asByteArray(new byte[8]);
+            final long deadline = System.currentTimeMillis() + 5_000;
+            while (!(boolean) runSocketPrimitive("primitiveSocketReceiveDataAvailable", socket)) {
+                assertTrue("Datagram did not arrive", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            /* The second buffer is not a byte array, so the datagram must still be there afterwards. */
+            assertSame(NilObject.SINGLETON, runSocketPrimitive("primitiveSocketReceiveDataMany", image.asArrayOfObjects(socket, socket), image.asArrayOfObjects(buffer, NilObject.SINGLETON)));
+            assertSame(NilObject.SINGLETON, runSocketPrimitive("primitiveSocketReceiveDataMany", image.asArrayOfObjects(socket), image.asArrayOfObjects(buffer, buffer)));
+
+            final ArrayObject counts = (ArrayObject) runSocketPrimitive("primitiveSocketReceiveDataMany", image.asArrayOfObjects(socket), image.asArrayOfObjects(buffer));
+            assertEquals(3L, counts.getLong(0));
+            assertEquals(3, buffer.getByteStorage()[2]);
+            runSocketPrimitive("primitiveSocketDestroy", socket);
+        }
+    }
+
+    @Test
+    public void testDirectoryLookupInterleaved() throws IOException {
+        final Path first = Files.createTempDirectory("first");
+        final Path second = Files.createTempDirectory("second");
+        try {
+            Files.createFile(first.resolve("a"));
+            Files.createFile(second.resolve("b"));
+            assertTrue(runDirectoryLookup(first, 1L) instanceof ArrayObject);
+            Files.createFile(first.resolve("c"));
+            /* Enumerating another directory must not drop the listing of the first one. */
+            assertTrue(runDirectoryLookup(second, 1L) instanceof ArrayObject);
+            assertSame(NilObject.SINGLETON, runDirectoryLookup(second, 2L));
+            assertSame(NilObject.SINGLETON, runDirectoryLookup(first, 2L));
+            /* A new enumeration reads the directory again. */
+            assertTrue(runDirectoryLookup(first, 1L) instanceof ArrayObject);
+            assertTrue(runDirectoryLookup(first, 2L) instanceof ArrayObject);
+            assertSame(NilObject.SINGLETON, runDirectoryLookup(first, 3L));
+        } finally {
+            for (final Path directory : new Path[]{first, second}) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                    for (final Path file : files) {
+                        Files.delete(file);
+                    }
+                }
+                Files.delete(directory);
+            }
+        }
+    }
+
+    @Test
+    public void testSocketReactorShutdown() throws IOException {
+        final SocketReactor reactor = new SocketReactor();
+        assertFalse(reactor.isRunning());
+        reactor.start();
+        reactor.start();
+        assertTrue(reactor.isRunning());
+        reactor.shutdown();
+        assertFalse(reactor.isRunning());
+        try {
+            reactor.start();
+            fail("Reactor must not restart after shutdown");
+        } catch (final IOException e) {
+            /* Expected, sockets of a disposed context fail. */
+        }
+    }
+
+    private static DatagramChannel openPeer() throws IOException {
+        final DatagramChannel peer = DatagramChannel.open();
+        peer.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        peer.configureBlocking(false);
+        return peer;
+    }
+
+    private Object connectUDPSocket(final DatagramChannel peer) throws IOException {
+        final Object socket = runSocketPrimitive("primitiveSocketCreate3Semaphores", 0L, 1L, 0L, 0L, 0L, 0L);
+        final long port = ((InetSocketAddress) peer.getLocalAddress()).getPort();
+        assertEquals(0L, runSocketPrimitive("primitiveSocketConnectToPort", socket, image.asByteArray(InetAddress.getLoopbackAddress().getAddress()), port));
+        return socket;
+    }
+
+    private Object runIdentityScan(final String functionName, final ArrayObject array, final Object key, final long start) {
+        return runNamedPrimitive("TruffleSqueakPlugin", functionName, array, key, start);
+    }
+
+    private Object runDirectoryLookup(final Path directory, final long index) {
+        return runNamedPrimitive("FilePlugin", "primitiveDirectoryLookup", image.asByteString(directory.toString()), index);
+    }
+
+    private Object runSocketPrimitive(final String functionName, final Object... arguments) {
+        return runNamedPrimitive("SocketPlugin", functionName, arguments);
+    }
+
+    /* Answers nil if the primitive fails. */
+    private Object runNamedPrimitive(final String moduleName, final String functionName, final Object... arguments) {
+        final ArrayObject description = image.asArrayOfObjects(image.asByteString(moduleName), image.asByteString(functionName), 0L, 0L);
+        final Object[] literals = {makeHeader(arguments.length, 0, 2, true, false), description};
+        final CompiledCodeObject method = makeMethod(literals, 139, 117, 0, 115, 124);
+        return runMethod(method, image.schedulerAssociation, arguments);
+    }
 }
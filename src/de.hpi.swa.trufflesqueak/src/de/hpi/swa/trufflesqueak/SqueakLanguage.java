@@ -106,6 +106,11 @@ public final class SqueakLanguage extends TruffleLanguage<SqueakImageContext> {
         return SqueakOptions.createDescriptors();
     }
 
+    @Override
+    protected void disposeContext(final SqueakImageContext context) {
+        context.dispose();
+    }
+
     @Override
     protected boolean patchContext(final SqueakImageContext context, final Env newEnv) {
         return context.patch(newEnv);
@@ -29,15 +29,36 @@ public final class SqueakOptions {
     @Option(name = SqueakLanguageOptions.HEADLESS, category = OptionCategory.USER, stability = OptionStability.STABLE, help = SqueakLanguageOptions.HEADLESS_HELP)//
     public static final OptionKey<Boolean> Headless = new OptionKey<>(true);
 
+    @Option(name = SqueakLanguageOptions.INSTANCE_REGISTRY, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.INSTANCE_REGISTRY_HELP)//
+    public static final OptionKey<Boolean> InstanceRegistry = new OptionKey<>(false);
+
     @Option(name = SqueakLanguageOptions.INTERCEPT_MESSAGES, category = OptionCategory.INTERNAL, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.INTERCEPT_MESSAGES_HELP)//
     public static final OptionKey<String> InterceptMessages = new OptionKey<>("");
 
+    @Option(name = SqueakLanguageOptions.LAZY_METHOD_LOADING, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.LAZY_METHOD_LOADING_HELP)//
+    public static final OptionKey<Boolean> LazyMethodLoading = new OptionKey<>(false);
+
+    @Option(name = SqueakLanguageOptions.PARALLEL_IMAGE_LOADING, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.PARALLEL_IMAGE_LOADING_HELP)//
+    public static final OptionKey<Boolean> ParallelImageLoading = new OptionKey<>(false);
+
+    @Option(name = SqueakLanguageOptions.PARALLEL_IMAGE_WRITING, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.PARALLEL_IMAGE_WRITING_HELP)//
+    public static final OptionKey<Boolean> ParallelImageWriting = new OptionKey<>(false);
+
+    @Option(name = SqueakLanguageOptions.PARALLEL_OBJECT_TRACING, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.PARALLEL_OBJECT_TRACING_HELP)//
+    public static final OptionKey<Boolean> ParallelObjectTracing = new OptionKey<>(false);
+
     @Option(name = SqueakLanguageOptions.QUIET, category = OptionCategory.USER, stability = OptionStability.STABLE, help = SqueakLanguageOptions.QUIET_HELP)//
     public static final OptionKey<Boolean> Quiet = new OptionKey<>(true);
 
     @Option(name = SqueakLanguageOptions.INTERRUPTS, category = OptionCategory.USER, stability = OptionStability.STABLE, help = SqueakLanguageOptions.INTERRUPTS_HELP)//
     public static final OptionKey<Boolean> Interrupts = new OptionKey<>(false);
 
+    @Option(name = SqueakLanguageOptions.RESOLVER_HOSTS_FILE, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.RESOLVER_HOSTS_FILE_HELP)//
+    public static final OptionKey<String> ResolverHostsFile = new OptionKey<>("");
+
+    @Option(name = SqueakLanguageOptions.SHARED_IMAGE_LOADING, category = OptionCategory.EXPERT, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.SHARED_IMAGE_LOADING_HELP)//
+    public static final OptionKey<Boolean> SharedImageLoading = new OptionKey<>(false);
+
     @Option(name = SqueakLanguageOptions.SIGNAL_INPUT_SEMAPHORE, category = OptionCategory.INTERNAL, stability = OptionStability.EXPERIMENTAL, help = SqueakLanguageOptions.SIGNAL_INPUT_SEMAPHORE_HELP)//
     public static final OptionKey<Boolean> SignalInputSemaphore = new OptionKey<>(false);
 
@@ -62,6 +83,13 @@ public final class SqueakOptions {
         public final String[] imageArguments;
         public final boolean isHeadless;
         public final boolean isQuiet;
+        public final boolean instanceRegistry;
+        public final boolean lazyMethodLoading;
+        public final boolean parallelImageLoading;
+        public final boolean parallelImageWriting;
+        public final boolean parallelObjectTracing;
+        public final String resolverHostsFile;
+        public final boolean sharedImageLoading;
         public final boolean disableInterruptHandler;
         public final boolean disableStartup;
         public final boolean enableStorageStrategies;
@@ -74,6 +102,13 @@ public final class SqueakOptions {
             imageArguments = options.get(ImageArguments).isEmpty() ? new String[0] : options.get(ImageArguments).split(",");
             isHeadless = options.get(Headless);
             isQuiet = options.get(Quiet);
+            instanceRegistry = options.get(InstanceRegistry);
+            lazyMethodLoading = options.get(LazyMethodLoading);
+            parallelImageLoading = options.get(ParallelImageLoading);
+            parallelImageWriting = options.get(ParallelImageWriting);
+            parallelObjectTracing = options.get(ParallelObjectTracing);
+            resolverHostsFile = options.get(ResolverHostsFile);
+            sharedImageLoading = options.get(SharedImageLoading);
             disableInterruptHandler = options.get(Interrupts);
             disableStartup = options.get(Startup);
             signalInputSemaphore = options.get(SignalInputSemaphore);
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.image;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.oracle.truffle.api.TruffleFile;
+
+/**
+ * Object data of an image file shared by all contexts of a process that load the same, unmodified
+ * image file. The first context reads the file as usual and publishes its chunks, all further
+ * contexts create their chunks from this data without reading and scanning the file again. Pointer
+ * data is only decoded during loading and therefore shared as is. Bytecodes of compiled methods
+ * are shared by the {@link de.hpi.swa.trufflesqueak.model.CompiledCodeObject}s of all contexts,
+ * which copy them before they are modified. All other native data, including byte symbols, is
+ * copied for each context. Contexts keep the body they loaded from alive, so that it is dropped
+ * once the last of them is gone.
+ */
+final class SqueakImageBody {
+    private static final ConcurrentHashMap<String, WeakReference<SqueakImageBody>> BODIES = new ConcurrentHashMap<>();
+
+    private final String key;
+    /* Bytecodes of compiled methods by chunk position. */
+    private final ConcurrentHashMap<Integer, byte[]> bytecodes = new ConcurrentHashMap<>();
+    private ArrayList<Segment> segments;
+
+    private SqueakImageBody(final String key) {
+        this.key = key;
+    }
+
+    private static final class Segment {
+        private final long[] addresses;
+        private final int[] formats;
+        private final int[] classIndices;
+        private final int[] hashes;
+        private final int[] positions;
+        private final byte[][] data;
+
+        private Segment(final long[] addresses, final SqueakImageChunk[] chunks) {
+            this.addresses = addresses;
+            final int size = chunks.length;
+            formats = new int[size];
+            classIndices = new int[size];
+            hashes = new int[size];
+            positions = new int[size];
+            data = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                final SqueakImageChunk chunk = chunks[i];
+                formats[i] = chunk.getFormat();
+                classIndices[i] = chunk.getClassIndex();
+                hashes[i] = chunk.getHash();
+                positions[i] = chunk.getPosition();
+                /* Native data of the publishing context is used as storage of its objects. */
+                data[i] = copyIfMutable(chunk.getBytes(), formats[i]);
+            }
+        }
+    }
+
+    /** Returns the published body of the image file or a new body to be published by the caller. */
+    static SqueakImageBody lookupOrCreate(final TruffleFile imageFile) throws IOException {
+        final String key = imageFile.getCanonicalFile().getPath() + ':' + imageFile.size() + ':' + imageFile.getLastModifiedTime().toMillis();
+        final WeakReference<SqueakImageBody> reference = BODIES.get(key);
+        final SqueakImageBody body = reference == null ? null : reference.get();
+        if (body != null) {
+            return body;
+        } else if (reference != null) {
+            BODIES.remove(key, reference);
+        }
+        return new SqueakImageBody(key);
+    }
+
+    boolean isPublished() {
+        return segments != null;
+    }
+
+    void publish(final SqueakImageChunkTable chunktable) {
+        assert !isPublished();
+        final ArrayList<Segment> newSegments = new ArrayList<>();
+        chunktable.forEachSegment((addresses, chunks) -> newSegments.add(new Segment(addresses, chunks)));
+        segments = newSegments;
+        BODIES.put(key, new WeakReference<>(this));
+    }
+
+    /** Adds chunks for all objects to the table and returns the chunks of the first segment. */
+    SqueakImageChunk[] addChunksTo(final SqueakImageReader reader, final SqueakImageContext image, final SqueakImageChunkTable chunktable) {
+        assert isPublished();
+        SqueakImageChunk[] firstChunks = null;
+        for (final Segment segment : segments) {
+            final SqueakImageChunk[] chunks = new SqueakImageChunk[segment.addresses.length];
+            for (int i = 0; i < chunks.length; i++) {
+                final byte[] data = copyIfMutable(segment.data[i], segment.formats[i]);
+                chunks[i] = new SqueakImageChunk(reader, image, segment.formats[i], segment.classIndices[i], segment.hashes[i], segment.positions[i], data);
+            }
+            /* Addresses are never modified by the table and can be shared. */
+            chunktable.addSegment(segment.addresses, chunks);
+            if (firstChunks == null) {
+                firstChunks = chunks;
+            }
+        }
+        return firstChunks;
+    }
+
+    byte[] shareBytecodes(final int position, final byte[] data, final int start) {
+        return bytecodes.computeIfAbsent(position, p -> Arrays.copyOfRange(data, start, data.length));
+    }
+
+    private static byte[] copyIfMutable(final byte[] data, final int format) {
+        final boolean isNative = 9 <= format && format <= 23; /* Words, shorts, and bytes. */
+        return data != null && isNative ? data.clone() : data;
+    }
+}
@@ -202,16 +202,22 @@ public final class SqueakImageChunk {
     }
 
     private Object decodePointer(final long ptr) {
+        if ((ptr & 7) == SqueakImageConstants.OBJECT_TAG) {
+            final SqueakImageChunk chunk = reader.getChunk(ptr);
+            if (chunk == null) {
+                logBogusPointer(image, ptr);
+                return ptr >>> SqueakImageConstants.NUM_TAG_BITS;
+            } else {
+                assert bytes != null : "Must not be an ignored object";
+                return chunk.asObject();
+            }
+        } else {
+            return decodeImmediatePointer(ptr);
+        }
+    }
+
+    protected static Object decodeImmediatePointer(final long ptr) {
         switch ((int) (ptr & 7)) {
-            case SqueakImageConstants.OBJECT_TAG:
-                final SqueakImageChunk chunk = reader.getChunk(ptr);
-                if (chunk == null) {
-                    logBogusPointer(ptr);
-                    return ptr >>> SqueakImageConstants.NUM_TAG_BITS;
-                } else {
-                    assert bytes != null : "Must not be an ignored object";
-                    return chunk.asObject();
-                }
             case SqueakImageConstants.SMALL_INTEGER_TAG: // SmallInteger
                 return ptr >> SqueakImageConstants.NUM_TAG_BITS;
             case SqueakImageConstants.CHARACTER_TAG: // Character
@@ -231,7 +237,7 @@ public final class SqueakImageChunk {
     }
 
     @TruffleBoundary
-    private void logBogusPointer(final long ptr) {
+    protected static void logBogusPointer(final SqueakImageContext image, final long ptr) {
         image.getError().println("Bogus pointer: " + ptr + ". Treating as smallint.");
     }
 
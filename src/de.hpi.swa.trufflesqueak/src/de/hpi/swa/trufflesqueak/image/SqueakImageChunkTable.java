@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Maps object addresses to {@link SqueakImageChunk}s without boxing. Objects are read in address
+ * order, so each image segment is a sorted array of addresses that is searched with a binary
+ * search. Addresses of later segments are always higher than those of earlier segments.
+ */
+final class SqueakImageChunkTable {
+    private static final int MIN_SEGMENT_CAPACITY = 1024;
+    /* Used to estimate the number of objects in a segment. */
+    private static final int ESTIMATED_OBJECT_SIZE = 8 * SqueakImageConstants.WORD_SIZE;
+
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    private Segment currentSegment;
+
+    /** Starts a new segment for subsequent {@link #add(long, SqueakImageChunk)} calls. */
+    void startSegment(final long segmentSize) {
+        final int capacity = (int) Math.max(MIN_SEGMENT_CAPACITY, Math.min(segmentSize / ESTIMATED_OBJECT_SIZE, Integer.MAX_VALUE / 2));
+        currentSegment = new Segment(new long[capacity], new SqueakImageChunk[capacity], 0);
+        segments.add(currentSegment);
+    }
+
+    void add(final long address, final SqueakImageChunk chunk) {
+        final Segment segment = currentSegment;
+        assert segment.size == 0 || segment.addresses[segment.size - 1] < address : "Addresses must be added in ascending order";
+        if (segment.size == segment.addresses.length) {
+            final int newCapacity = segment.addresses.length * 2;
+            segment.addresses = Arrays.copyOf(segment.addresses, newCapacity);
+            segment.chunks = Arrays.copyOf(segment.chunks, newCapacity);
+        }
+        segment.addresses[segment.size] = address;
+        segment.chunks[segment.size++] = chunk;
+    }
+
+    /** Adds a complete segment. Both arrays are owned by the table afterwards. */
+    void addSegment(final long[] addresses, final SqueakImageChunk[] chunks) {
+        assert addresses.length == chunks.length;
+        assert segments.isEmpty() || addresses.length == 0 || segments.get(segments.size() - 1).lastAddress() < addresses[0] : "Segments must be added in ascending order";
+        segments.add(new Segment(addresses, chunks, addresses.length));
+    }
+
+    SqueakImageChunk get(final long address) {
+        for (final Segment segment : segments) {
+            if (segment.size > 0 && address <= segment.lastAddress()) {
+                final int index = Arrays.binarySearch(segment.addresses, 0, segment.size, address);
+                return index >= 0 ? segment.chunks[index] : null;
+            }
+        }
+        return null;
+    }
+
+    void forEach(final Consumer<SqueakImageChunk> action) {
+        for (final Segment segment : segments) {
+            for (int i = 0; i < segment.size; i++) {
+                action.accept(segment.chunks[i]);
+            }
+        }
+    }
+
+    /** Applies action to all chunks on the common {@link java.util.concurrent.ForkJoinPool}. */
+    void forEachInParallel(final Consumer<SqueakImageChunk> action) {
+        for (final Segment segment : segments) {
+            Arrays.stream(segment.chunks, 0, segment.size).parallel().forEach(action);
+        }
+    }
+
+    /** Applies action to the addresses and chunks of each segment, trimmed to its size. */
+    void forEachSegment(final BiConsumer<long[], SqueakImageChunk[]> action) {
+        for (final Segment segment : segments) {
+            action.accept(Arrays.copyOf(segment.addresses, segment.size), Arrays.copyOf(segment.chunks, segment.size));
+        }
+    }
+
+    private static final class Segment {
+        private long[] addresses;
+        private SqueakImageChunk[] chunks;
+        private int size;
+
+        private Segment(final long[] addresses, final SqueakImageChunk[] chunks, final int size) {
+            this.addresses = addresses;
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        private long lastAddress() {
+            return addresses[size - 1];
+        }
+    }
+}
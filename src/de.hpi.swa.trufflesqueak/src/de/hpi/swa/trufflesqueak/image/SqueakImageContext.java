@@ -9,6 +9,11 @@ import java.io.PrintWriter;
 import java.lang.ref.ReferenceQueue;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
@@ -43,6 +48,7 @@ import de.hpi.swa.trufflesqueak.model.InteropSenderMarker;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.model.NilObject;
 import de.hpi.swa.trufflesqueak.model.PointersObject;
+import de.hpi.swa.trufflesqueak.model.VariablePointersObject;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.ASSOCIATION;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.ENVIRONMENT;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.MESSAGE;
@@ -55,15 +61,21 @@ import de.hpi.swa.trufflesqueak.nodes.ExecuteTopLevelContextNode;
 import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.AbstractPointersObjectWriteNode;
 import de.hpi.swa.trufflesqueak.nodes.plugins.B2D;
 import de.hpi.swa.trufflesqueak.nodes.plugins.BitBlt;
+import de.hpi.swa.trufflesqueak.nodes.plugins.FilePlugin.DirectoryListing;
 import de.hpi.swa.trufflesqueak.nodes.plugins.JPEGReader;
 import de.hpi.swa.trufflesqueak.nodes.plugins.Zip;
+import de.hpi.swa.trufflesqueak.nodes.plugins.network.Resolver;
+import de.hpi.swa.trufflesqueak.nodes.plugins.network.SocketReactor;
 import de.hpi.swa.trufflesqueak.nodes.process.GetActiveProcessNode;
 import de.hpi.swa.trufflesqueak.shared.SqueakImageLocator;
 import de.hpi.swa.trufflesqueak.tools.SqueakMessageInterceptor;
 import de.hpi.swa.trufflesqueak.util.ArrayUtils;
+import de.hpi.swa.trufflesqueak.util.InstanceRegistry;
 import de.hpi.swa.trufflesqueak.util.InterruptHandlerState;
+import de.hpi.swa.trufflesqueak.util.MegamorphicSendCache;
 import de.hpi.swa.trufflesqueak.util.MethodCacheEntry;
 import de.hpi.swa.trufflesqueak.util.MiscUtils;
+import de.hpi.swa.trufflesqueak.util.SymbolTable;
 
 public final class SqueakImageContext {
     /* Special objects */
@@ -106,15 +118,25 @@ public final class SqueakImageContext {
     public final CompiledCodeObject dummyMethod = new CompiledCodeObject(this, null, new Object[]{CompiledCodeObject.makeHeader(1, 0, 0, false, true)}, compiledMethodClass);
 
     /* Method Cache */
-    private static final int METHOD_CACHE_SIZE = 1024;
+    private static final int METHOD_CACHE_SIZE = 4096;
     private static final int METHOD_CACHE_MASK = METHOD_CACHE_SIZE - 1;
     private static final int METHOD_CACHE_REPROBES = 4;
+    private static final int SELECTOR_VERSIONS_SIZE = 1024;
+    private static final int SELECTOR_VERSIONS_MASK = SELECTOR_VERSIONS_SIZE - 1;
     private int methodCacheRandomish = 0;
     @CompilationFinal(dimensions = 1) private final MethodCacheEntry[] methodCache = new MethodCacheEntry[METHOD_CACHE_SIZE];
+    /* Incremented on every flush. Entries are valid if not older than their flush versions. */
+    private long methodCacheVersion = 0;
+    private long methodCacheFlushVersion = 0;
+    private final long[] selectorFlushVersions = new long[SELECTOR_VERSIONS_SIZE];
+    /* Weak keys, megamorphic send caches are dropped together with their selectors. */
+    private final Map<NativeObject, MegamorphicSendCache> megamorphicSendCaches = Collections.synchronizedMap(new WeakHashMap<>());
 
     /* System Information */
     public final SqueakImageFlags flags = new SqueakImageFlags();
     private String imagePath;
+    /* Keeps image data shared with other contexts alive (see SqueakImageBody). */
+    SqueakImageBody sharedImageBody;
     private final TruffleFile homePath;
     @CompilationFinal(dimensions = 1) private byte[] resourcesPathBytes;
     @CompilationFinal private boolean isHeadless;
@@ -128,6 +150,8 @@ public final class SqueakImageContext {
     private long globalClassCounter = -1;
     @CompilationFinal private SqueakDisplayInterface display;
     public final InterruptHandlerState interrupt;
+    public final InstanceRegistry instanceRegistry;
+    public final SymbolTable symbolTable = new SymbolTable(this);
     public final long startUpMillis = System.currentTimeMillis();
     public final ReferenceQueue<Object> weakPointersQueue = new ReferenceQueue<>();
 
@@ -153,8 +177,11 @@ public final class SqueakImageContext {
     /* Plugins */
     public final B2D b2d = new B2D(this);
     public final BitBlt bitblt = new BitBlt(this);
+    public final DirectoryListing directoryListing = new DirectoryListing();
     public String[] dropPluginFileList = new String[0];
     public final JPEGReader jpegReader = new JPEGReader();
+    public final Resolver resolver = new Resolver(this);
+    public final SocketReactor socketReactor = new SocketReactor();
     public final Zip zip = new Zip();
 
     /* Error detection for headless execution */
@@ -169,6 +196,7 @@ public final class SqueakImageContext {
         options = new SqueakContextOptions(env);
         isHeadless = options.isHeadless;
         interrupt = InterruptHandlerState.create(this);
+        instanceRegistry = options.instanceRegistry ? new InstanceRegistry(this) : null;
         allocationReporter = env.lookup(AllocationReporter.class);
         SqueakMessageInterceptor.enableIfRequested(environment);
         final String truffleLanguageHome = language.getTruffleLanguageHome();
@@ -231,7 +259,11 @@ public final class SqueakImageContext {
     }
 
     public Object lookup(final String member) {
-        final Object symbol = asByteString(member).send("asSymbol");
+        Object symbol = symbolTable.lookup(member);
+        if (symbol == null) {
+            symbol = asByteString(member).send("asSymbol");
+            symbolTable.register(symbol);
+        }
         return smalltalk.send("at:ifAbsent:", symbol, NilObject.SINGLETON);
     }
 
@@ -240,6 +272,14 @@ public final class SqueakImageContext {
         return smalltalk.send("classNamed:", asByteString(className));
     }
 
+    /* Stops threads of the VM and its plugins when the context is disposed. */
+    @TruffleBoundary
+    public void dispose() {
+        interrupt.shutdown();
+        resolver.shutdown();
+        socketReactor.shutdown();
+    }
+
     public boolean patch(final SqueakLanguage.Env newEnv) {
         CompilerDirectives.transferToInterpreterAndInvalidate();
         env = newEnv;
@@ -618,17 +658,22 @@ public final class SqueakImageContext {
      * used (selector and class set) with method == null. Initial probe is class xor selector,
      * reprobe delta is selector. We do not try to optimize probe time -- all are equally 'fast'
      * compared to lookup. Instead we randomize the reprobe so two or three very active conflicting
-     * entries will not keep dislodging each other.
+     * entries will not keep dislodging each other. Flushes do not touch the entries, instead
+     * entries older than the last flush of all entries or of their selector are considered stale.
      */
     @ExplodeLoop
     public MethodCacheEntry findMethodCacheEntry(final ClassObject classObject, final NativeObject selector) {
         methodCacheRandomish = methodCacheRandomish + 1 & 3;
         final int selectorHash = System.identityHashCode(selector);
+        final long validVersion = getMethodCacheValidVersion(selector);
         int firstProbe = (System.identityHashCode(classObject) ^ selectorHash) & METHOD_CACHE_MASK;
         int probe = firstProbe;
         for (int i = 0; i < METHOD_CACHE_REPROBES; i++) {
             final MethodCacheEntry entry = methodCache[probe];
             if (entry.getClassObject() == classObject && entry.getSelector() == selector) {
+                if (entry.getVersion() < validVersion) {
+                    return entry.reuseFor(classObject, selector, methodCacheVersion);
+                }
                 return entry;
             }
             if (i == methodCacheRandomish) {
@@ -636,37 +681,97 @@ public final class SqueakImageContext {
             }
             probe = probe + selectorHash & METHOD_CACHE_MASK;
         }
-        return methodCache[firstProbe].reuseFor(classObject, selector);
+        return methodCache[firstProbe].reuseFor(classObject, selector, methodCacheVersion);
+    }
+
+    public long getMethodCacheVersion() {
+        return methodCacheVersion;
+    }
+
+    /* Entries for selector are valid if their version is not lower than this. */
+    public long getMethodCacheValidVersion(final NativeObject selector) {
+        return Math.max(methodCacheFlushVersion, selectorFlushVersions[System.identityHashCode(selector) & SELECTOR_VERSIONS_MASK]);
+    }
+
+    @TruffleBoundary
+    public MegamorphicSendCache getMegamorphicSendCache(final NativeObject selector) {
+        return megamorphicSendCaches.computeIfAbsent(selector, s -> new MegamorphicSendCache(this));
     }
 
     /* Clear all cache entries (prim 89). */
     public void flushMethodCache() {
-        for (int i = 0; i < METHOD_CACHE_SIZE; i++) {
-            methodCache[i].freeAndRelease();
-        }
+        methodCacheFlushVersion = ++methodCacheVersion;
     }
 
-    /* Clear cache entries for selector (prim 119). */
+    /* Clear cache entries for selector (prim 119). Selectors share versions by identity hash. */
     public void flushMethodCacheForSelector(final NativeObject selector) {
-        for (int i = 0; i < METHOD_CACHE_SIZE; i++) {
-            if (methodCache[i].getSelector() == selector) {
-                methodCache[i].freeAndRelease();
+        selectorFlushVersions[System.identityHashCode(selector) & SELECTOR_VERSIONS_MASK] = ++methodCacheVersion;
+    }
+
+    /*
+     * Clear cache entries for method (prim 116). Besides its selector, the method may be cached
+     * under other selectors (e.g. aliases or copied methods), so all entries that answer it are
+     * released as well.
+     */
+    @TruffleBoundary
+    public void flushMethodCacheForMethod(final CompiledCodeObject method) {
+        final Set<Object> methods = Collections.newSetFromMap(new IdentityHashMap<>());
+        methods.add(method);
+        flushMethodCacheForMethods(methods);
+    }
+
+    /* Releases the entries of all methods in one pass over the caches. */
+    private void flushMethodCacheForMethods(final Set<Object> methods) {
+        final Set<Object> selectors = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final Object method : methods) {
+            final NativeObject selector = ((CompiledCodeObject) method).getCompiledInSelector();
+            if (selector != null) {
+                flushMethodCacheForSelector(selector);
+                selectors.add(selector);
+            } else {
+                flushMethodCache();
+            }
+        }
+        for (final MethodCacheEntry entry : methodCache) {
+            if (methods.contains(entry.getResult()) || selectors.contains(entry.getSelector())) {
+                entry.release();
+            }
+        }
+        synchronized (megamorphicSendCaches) {
+            for (final MegamorphicSendCache cache : megamorphicSendCaches.values()) {
+                cache.release(methods);
             }
         }
     }
 
-    /* Clear cache entries for method (prim 116). */
-    public void flushMethodCacheForMethod(final CompiledCodeObject method) {
-        for (int i = 0; i < METHOD_CACHE_SIZE; i++) {
-            if (methodCache[i].getResult() == method) {
-                methodCache[i].freeAndRelease();
+    /*
+     * Lookups only depend on classes, method dictionaries and their values arrays, selectors, and
+     * methods, so all other objects (e.g. migrated instances) can be swapped without a flush.
+     */
+    @TruffleBoundary
+    public void flushMethodCacheAfterBecome(final Object[] fromPointers, final Object[] toPointers) {
+        final Set<Object> methods = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (collectMethodsAfterBecome(fromPointers, methods) && collectMethodsAfterBecome(toPointers, methods)) {
+            if (!methods.isEmpty()) {
+                flushMethodCacheForMethods(methods);
             }
+        } else {
+            flushMethodCache();
         }
     }
 
-    public void flushMethodCacheAfterBecome() {
-        /* TODO: Could be selective by checking class, selector, and method against mutations. */
-        flushMethodCache();
+    /* Flushes swapped selectors and collects swapped methods. Answers false if all entries must go. */
+    private boolean collectMethodsAfterBecome(final Object[] pointers, final Set<Object> methods) {
+        for (final Object pointer : pointers) {
+            if (pointer instanceof ClassObject || pointer instanceof VariablePointersObject || pointer instanceof ArrayObject) {
+                return false;
+            } else if (pointer instanceof NativeObject) {
+                flushMethodCacheForSelector((NativeObject) pointer);
+            } else if (pointer instanceof CompiledCodeObject) {
+                methods.add(pointer);
+            }
+        }
+        return true;
     }
 
     /*
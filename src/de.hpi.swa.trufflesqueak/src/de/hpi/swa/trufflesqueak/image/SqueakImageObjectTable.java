@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.image;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerAsserts;
+
+import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
+
+/**
+ * Resolves literal pointers of a loaded image to their objects. With lazy method loading, compiled
+ * code objects keep their raw image data and use this table to decode their literals on first
+ * access. The table only maps the addresses referenced by literals of pending compiled code
+ * objects, and is released as soon as the last of them has been materialized.
+ */
+public final class SqueakImageObjectTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final SqueakImageContext image;
+    private int numPending;
+    /* Literal pointers of pending objects, sorted and without duplicates once built. */
+    private long[] addresses = new long[INITIAL_CAPACITY];
+    private int numAddresses;
+    private Object[] objects;
+
+    SqueakImageObjectTable(final SqueakImageContext image) {
+        this.image = image;
+    }
+
+    /**
+     * Registers an object whose image data is decoded on first access. The data starts with the
+     * method header, which is followed by the given number of literals.
+     */
+    public synchronized void addPending(final byte[] data, final int numLiterals) {
+        assert objects == null : "Table has already been built";
+        numPending++;
+        for (int i = 1; i <= numLiterals; i++) {
+            final long ptr = UnsafeUtils.getLong(data, i);
+            if ((ptr & 7) == SqueakImageConstants.OBJECT_TAG) {
+                if (numAddresses == addresses.length) {
+                    addresses = Arrays.copyOf(addresses, numAddresses * 2);
+                }
+                addresses[numAddresses++] = ptr;
+            }
+        }
+    }
+
+    synchronized boolean hasPending() {
+        return numPending > 0;
+    }
+
+    /** Resolves all registered literal pointers. Other objects of the image are not retained. */
+    synchronized void build(final SqueakImageChunkTable chunkTable) {
+        Arrays.sort(addresses, 0, numAddresses);
+        int size = 0;
+        for (int i = 0; i < numAddresses; i++) {
+            if (size == 0 || addresses[size - 1] != addresses[i]) {
+                addresses[size++] = addresses[i];
+            }
+        }
+        addresses = Arrays.copyOf(addresses, size);
+        objects = new Object[size];
+        for (int i = 0; i < size; i++) {
+            final SqueakImageChunk chunk = chunkTable.get(addresses[i]);
+            objects[i] = chunk == null ? null : chunk.asObject();
+        }
+    }
+
+    /** Notifies the table that a pending object has been materialized. */
+    public synchronized void removePending() {
+        assert numPending > 0;
+        if (--numPending == 0) {
+            addresses = null; /* Release all literals. */
+            objects = null;
+        }
+    }
+
+    public synchronized Object decodePointer(final long ptr) {
+        CompilerAsserts.neverPartOfCompilation();
+        if ((ptr & 7) == SqueakImageConstants.OBJECT_TAG) {
+            assert objects != null : "Table has not been built or has already been released";
+            final int index = Arrays.binarySearch(addresses, ptr);
+            if (index >= 0 && objects[index] != null) {
+                return objects[index];
+            }
+            SqueakImageChunk.logBogusPointer(image, ptr);
+            return ptr >>> SqueakImageConstants.NUM_TAG_BITS;
+        } else {
+            return SqueakImageChunk.decodeImmediatePointer(ptr);
+        }
+    }
+}
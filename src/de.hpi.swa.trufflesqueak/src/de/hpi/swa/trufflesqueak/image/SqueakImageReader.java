@@ -7,20 +7,37 @@ package de.hpi.swa.trufflesqueak.image;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.TruffleFile;
 
 import de.hpi.swa.trufflesqueak.exceptions.SqueakExceptions.SqueakAbortException;
+import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
 import de.hpi.swa.trufflesqueak.model.AbstractSqueakObject;
 import de.hpi.swa.trufflesqueak.model.AbstractSqueakObjectWithHash;
 import de.hpi.swa.trufflesqueak.model.ArrayObject;
+import de.hpi.swa.trufflesqueak.model.BlockClosureObject;
 import de.hpi.swa.trufflesqueak.model.BooleanObject;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.ContextObject;
+import de.hpi.swa.trufflesqueak.model.EmptyObject;
+import de.hpi.swa.trufflesqueak.model.FloatObject;
+import de.hpi.swa.trufflesqueak.model.LargeIntegerObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.model.NilObject;
 import de.hpi.swa.trufflesqueak.model.PointersObject;
@@ -33,11 +50,17 @@ import de.hpi.swa.trufflesqueak.util.MiscUtils;
 import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
 public final class SqueakImageReader {
+    /* Number of objects copied out of a mapped segment per parallel task. */
+    private static final int PARALLEL_BATCH_SIZE = 4096;
+
     protected SqueakImageChunk hiddenRootsChunk;
 
     private final BufferedInputStream stream;
-    private final HashMap<Long, SqueakImageChunk> chunktable = new HashMap<>(750000);
+    private final SqueakImageChunkTable chunktable = new SqueakImageChunkTable();
     private final SqueakImageContext image;
+    private final boolean isParallel;
+    private final SqueakImageObjectTable lazyObjectTable;
+    private final SqueakImageBody sharedBody;
     private final byte[] byteArrayBuffer = new byte[Long.BYTES];
     private final Map<PointersObject, AbstractSqueakObject> suspendedContexts = new HashMap<>();
 
@@ -69,6 +92,18 @@ public final class SqueakImageReader {
         }
         stream = inputStream;
         this.image = image;
+        isParallel = image.options.parallelImageLoading;
+        lazyObjectTable = image.options.lazyMethodLoading ? new SqueakImageObjectTable(image) : null;
+        sharedBody = image.options.sharedImageLoading ? lookupSharedBody(truffleFile) : null;
+    }
+
+    private SqueakImageBody lookupSharedBody(final TruffleFile truffleFile) {
+        try {
+            return SqueakImageBody.lookupOrCreate(truffleFile);
+        } catch (final IOException | SecurityException e) {
+            image.printToStdErr("Image cannot be shared with other contexts:", e.getMessage());
+            return null;
+        }
     }
 
     /*
@@ -87,18 +122,49 @@ public final class SqueakImageReader {
         SqueakImageContext.initializeBeforeLoadingImage();
         final long start = MiscUtils.currentTimeMillis();
         readHeader();
+        final boolean isSharedBodyPublished = sharedBody != null && sharedBody.isPublished();
         try {
-            readBody();
+            final FileChannel channel = isParallel && !isSharedBodyPublished ? openFileChannel() : null;
+            if (isSharedBodyPublished) {
+                findHiddenObjects(sharedBody.addChunksTo(this, image, chunktable));
+            } else if (channel == null || !readBodyInParallel(channel)) {
+                readBody();
+            }
         } finally {
             closeStream();
         }
         initObjects();
+        if (sharedBody != null) {
+            if (!isSharedBodyPublished) {
+                sharedBody.publish(chunktable);
+            }
+            image.sharedImageBody = sharedBody;
+        }
         image.printToStdOut("Image loaded in", MiscUtils.currentTimeMillis() - start + "ms.");
         initializeSuspendedContexts();
         image.initializeAfterLoadingImage((ArrayObject) hiddenRootsChunk.asObject());
         return image.getSqueakImage();
     }
 
+    /** Returns the table for resolving pointers of lazily loaded methods or `null`. */
+    public SqueakImageObjectTable getLazyObjectTable() {
+        return lazyObjectTable;
+    }
+
+    /** Returns the bytecodes of a compiled code chunk, shared with other contexts if possible. */
+    public byte[] getBytecodes(final SqueakImageChunk chunk, final int start) {
+        final byte[] data = chunk.getBytes();
+        if (sharedBody != null) {
+            return sharedBody.shareBytecodes(chunk.getPosition(), data, start);
+        } else {
+            return Arrays.copyOfRange(data, start, data.length);
+        }
+    }
+
+    public boolean sharesBytecodes() {
+        return sharedBody != null;
+    }
+
     public Map<PointersObject, AbstractSqueakObject> getSuspendedContexts() {
         return suspendedContexts;
     }
@@ -213,6 +279,7 @@ public final class SqueakImageReader {
         position = 0;
         long segmentEnd = firstSegmentSize;
         currentAddressSwizzle = oldBaseAddress;
+        chunktable.startSegment(firstSegmentSize);
         while (position < segmentEnd) {
             while (position < segmentEnd - SqueakImageConstants.IMAGE_BRIDGE_SIZE) {
                 final SqueakImageChunk chunk = readObject();
@@ -235,6 +302,7 @@ public final class SqueakImageReader {
             }
             segmentEnd += nextSegmentSize;
             currentAddressSwizzle += bridgeSpan * SqueakImageConstants.WORD_SIZE;
+            chunktable.startSegment(nextSegmentSize);
         }
     }
 
@@ -246,8 +314,189 @@ public final class SqueakImageReader {
         }
     }
 
+    /*
+     * PARALLEL LOADING
+     */
+
+    /** Returns a {@link FileChannel} for the image or `null` if the file system does not provide one. */
+    private FileChannel openFileChannel() {
+        final SeekableByteChannel channel;
+        try {
+            channel = image.env.getPublicTruffleFile(image.getImagePath()).newByteChannel(Collections.singleton(StandardOpenOption.READ));
+        } catch (final IOException e) {
+            throw SqueakAbortException.create("Failed to open image file:", e.getMessage());
+        }
+        if (channel instanceof FileChannel) {
+            return (FileChannel) channel;
+        }
+        image.printToStdErr("Image cannot be memory-mapped, falling back to sequential image loading.");
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            throw SqueakAbortException.create("Failed to close channel:", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Reads the image body from memory-mapped segments. Segment boundaries are known from the
+     * bridges at the end of each segment, so segments are scanned for object boundaries
+     * concurrently. Afterwards, object data is copied into {@link SqueakImageChunk}s in batches on
+     * the common {@link java.util.concurrent.ForkJoinPool}. Returns `false` if the body cannot be
+     * memory-mapped, in which case it has to be read sequentially.
+     */
+    private boolean readBodyInParallel(final FileChannel channel) {
+        final List<MappedSegment> segments;
+        try {
+            segments = mapSegments(channel);
+        } finally {
+            try {
+                channel.close(); /* Mappings remain valid after the channel is closed. */
+            } catch (final IOException e) {
+                throw SqueakAbortException.create("Failed to close channel:", e.getMessage());
+            }
+        }
+        if (segments == null) {
+            image.printToStdErr("Image is too large to be memory-mapped, falling back to sequential image loading.");
+            return false;
+        }
+        segments.parallelStream().forEach(MappedSegment::scanObjects);
+        for (final MappedSegment segment : segments) {
+            final int numBatches = (segment.numObjects + PARALLEL_BATCH_SIZE - 1) / PARALLEL_BATCH_SIZE;
+            IntStream.range(0, numBatches).parallel().forEach(batch -> readChunks(segment, batch * PARALLEL_BATCH_SIZE, Math.min((batch + 1) * PARALLEL_BATCH_SIZE, segment.numObjects)));
+        }
+        findHiddenObjects(segments.get(0).chunks);
+        for (final MappedSegment segment : segments) {
+            chunktable.addSegment(segment.addresses, segment.chunks);
+        }
+        return true;
+    }
+
+    private void findHiddenObjects(final SqueakImageChunk[] firstSegmentChunks) {
+        for (final SqueakImageChunk chunk : firstSegmentChunks) {
+            if (isHiddenObject(chunk.getClassIndex())) {
+                if (freePageList == null) {
+                    assert chunk.getClassIndex() == SqueakImageConstants.WORD_SIZE_CLASS_INDEX_PUN;
+                    freePageList = chunk; /* First hidden object. */
+                } else {
+                    assert chunk.getClassIndex() == SqueakImageConstants.ARRAY_CLASS_INDEX_PUN : "hiddenRootsObj has unexpected class index";
+                    hiddenRootsChunk = chunk; /* Second hidden object. */
+                    break;
+                }
+            }
+        }
+        assert hiddenRootsChunk != null : "hiddenRootsChunk must be known from now on.";
+    }
+
+    /** Returns the mapped segments or `null` if a segment ends beyond the reach of `int` offsets. */
+    private List<MappedSegment> mapSegments(final FileChannel channel) {
+        final List<MappedSegment> segments = new ArrayList<>();
+        long segmentStart = 0;
+        long segmentSize = firstSegmentSize;
+        long addressSwizzle = oldBaseAddress;
+        while (true) {
+            if (segmentStart + segmentSize > Integer.MAX_VALUE) {
+                return null;
+            }
+            final ByteBuffer buffer;
+            try {
+                buffer = channel.map(MapMode.READ_ONLY, headerSize + segmentStart, segmentSize).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (final IOException e) {
+                throw SqueakAbortException.create("Failed to map image segment:", e.getMessage());
+            }
+            segments.add(new MappedSegment(buffer, (int) segmentStart, addressSwizzle));
+            final int bridgePosition = (int) segmentSize - SqueakImageConstants.IMAGE_BRIDGE_SIZE;
+            final long bridge = buffer.getLong(bridgePosition);
+            long bridgeSpan = 0;
+            if ((bridge & SqueakImageConstants.SLOTS_MASK) != 0) {
+                bridgeSpan = bridge & ~SqueakImageConstants.SLOTS_MASK;
+            }
+            final long nextSegmentSize = buffer.getLong(bridgePosition + SqueakImageConstants.WORD_SIZE);
+            assert bridgeSpan >= 0;
+            assert nextSegmentSize >= 0;
+            if (nextSegmentSize == 0) {
+                return segments;
+            }
+            segmentStart += segmentSize;
+            segmentSize = nextSegmentSize;
+            addressSwizzle += bridgeSpan * SqueakImageConstants.WORD_SIZE;
+        }
+    }
+
+    private void readChunks(final MappedSegment segment, final int from, final int to) {
+        final ByteBuffer buffer = segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = from; i < to; i++) {
+            final int offset = segment.objectOffsets[i];
+            final long headerWord = buffer.getLong(offset);
+            int numSlots = SqueakImageConstants.ObjectHeader.getNumSlots(headerWord);
+            if (numSlots == SqueakImageConstants.OVERFLOW_SLOTS) {
+                numSlots = (int) (buffer.getLong(offset - SqueakImageConstants.WORD_SIZE) & ~SqueakImageConstants.SLOTS_MASK);
+            }
+            final int classIndex = SqueakImageConstants.ObjectHeader.getClassIndex(headerWord);
+            final int format = SqueakImageConstants.ObjectHeader.getFormat(headerWord);
+            final byte[] objectData;
+            if (ignoreObjectData(headerWord, classIndex, numSlots)) {
+                objectData = null;
+            } else if (numSlots == 0) {
+                objectData = emptyBytes;
+            } else {
+                objectData = new byte[numSlots * SqueakImageConstants.WORD_SIZE - calculateObjectPadding(format)];
+                buffer.position(offset + SqueakImageConstants.WORD_SIZE);
+                buffer.get(objectData);
+            }
+            final int hash = SqueakImageConstants.ObjectHeader.getHash(headerWord);
+            final int position = segment.bodyOffset + offset;
+            segment.addresses[i] = position + segment.addressSwizzle;
+            segment.chunks[i] = new SqueakImageChunk(this, image, format, classIndex, hash, position, objectData);
+        }
+    }
+
+    private static final class MappedSegment {
+        private final ByteBuffer buffer;
+        /* Offset of the segment within the image body (chunk positions are relative to the body). */
+        private final int bodyOffset;
+        private final long addressSwizzle;
+        private int[] objectOffsets = new int[1024];
+        private int numObjects;
+        private long[] addresses;
+        private SqueakImageChunk[] chunks;
+
+        private MappedSegment(final ByteBuffer buffer, final int bodyOffset, final long addressSwizzle) {
+            this.buffer = buffer;
+            this.bodyOffset = bodyOffset;
+            this.addressSwizzle = addressSwizzle;
+        }
+
+        /* Find object boundaries (see SqueakImageReader#readObject). */
+        private void scanObjects() {
+            final int objectsEnd = buffer.limit() - SqueakImageConstants.IMAGE_BRIDGE_SIZE;
+            int offset = 0;
+            while (offset < objectsEnd) {
+                assert offset % SqueakImageConstants.WORD_SIZE == 0 : "every object must be 64-bit aligned: " + offset % SqueakImageConstants.WORD_SIZE;
+                long headerWord = buffer.getLong(offset);
+                int numSlots = SqueakImageConstants.ObjectHeader.getNumSlots(headerWord);
+                if (numSlots == SqueakImageConstants.OVERFLOW_SLOTS) {
+                    numSlots = (int) (headerWord & ~SqueakImageConstants.SLOTS_MASK);
+                    offset += SqueakImageConstants.WORD_SIZE;
+                    headerWord = buffer.getLong(offset);
+                }
+                if (numObjects == objectOffsets.length) {
+                    objectOffsets = Arrays.copyOf(objectOffsets, objectOffsets.length * 2);
+                }
+                objectOffsets[numObjects++] = offset;
+                final int classIndex = SqueakImageConstants.ObjectHeader.getClassIndex(headerWord);
+                final boolean isIgnored = ignoreObjectData(headerWord, classIndex, numSlots);
+                /* Empty (0-slot) objects are followed by a trailing alignment word. */
+                offset += SqueakImageConstants.WORD_SIZE + (numSlots == 0 && !isIgnored ? 1 : numSlots) * SqueakImageConstants.WORD_SIZE;
+            }
+            assert offset == objectsEnd;
+            addresses = new long[numObjects];
+            chunks = new SqueakImageChunk[numObjects];
+        }
+    }
+
     private void putChunk(final SqueakImageChunk chunk) {
-        chunktable.put(chunk.getPosition() + currentAddressSwizzle, chunk);
+        chunktable.add(chunk.getPosition() + currentAddressSwizzle, chunk);
     }
 
     private SqueakImageChunk readObject() {
@@ -367,6 +616,9 @@ public final class SqueakImageReader {
         initPrebuiltConstant();
         fillInClassObjects();
         fillInObjects();
+        if (lazyObjectTable != null && lazyObjectTable.hasPending()) {
+            lazyObjectTable.build(chunktable);
+        }
         fillInContextObjects();
         fillInSmallFloatClass();
     }
@@ -447,7 +699,11 @@ public final class SqueakImageReader {
     }
 
     private void fillInObjects() {
-        for (final SqueakImageChunk chunk : chunktable.values()) {
+        if (isParallel) {
+            fillInObjectsInParallel();
+            return;
+        }
+        chunktable.forEach(chunk -> {
             final Object chunkObject = chunk.asObject();
             if (chunkObject instanceof AbstractSqueakObjectWithHash) {
                 final AbstractSqueakObjectWithHash obj = (AbstractSqueakObjectWithHash) chunkObject;
@@ -459,18 +715,55 @@ public final class SqueakImageReader {
                 }
                 obj.fillin(chunk);
             }
-        }
+        });
+    }
+
+    /**
+     * Objects are instantiated and their pointers decoded concurrently. Objects that only update
+     * themselves when filled in are also filled in concurrently. All others (e.g., pointers objects,
+     * which share their layout with all instances of their class) are filled in sequentially.
+     */
+    private void fillInObjectsInParallel() {
+        chunktable.forEachInParallel(SqueakImageChunk::asObject);
+        chunktable.forEachInParallel(chunk -> {
+            final Object chunkObject = chunk.asObject();
+            if (chunkObject instanceof AbstractSqueakObjectWithHash) {
+                final AbstractSqueakObjectWithHash obj = (AbstractSqueakObjectWithHash) chunkObject;
+                if (obj.needsSqueakClass()) {
+                    obj.setSqueakClass(chunk.getSqClass());
+                }
+                if (obj.needsSqueakHash()) {
+                    obj.setSqueakHash(chunk.getHash());
+                }
+                if (canFillInConcurrently(obj)) {
+                    obj.fillin(chunk);
+                } else if (obj instanceof AbstractPointersObject || obj instanceof ContextObject) {
+                    chunk.getPointers();
+                }
+            }
+        });
+        chunktable.forEach(chunk -> {
+            final Object chunkObject = chunk.asObject();
+            if (chunkObject instanceof AbstractSqueakObjectWithHash && !canFillInConcurrently((AbstractSqueakObjectWithHash) chunkObject)) {
+                ((AbstractSqueakObjectWithHash) chunkObject).fillin(chunk);
+            }
+        });
+    }
+
+    private static boolean canFillInConcurrently(final AbstractSqueakObjectWithHash obj) {
+        return obj instanceof ArrayObject || obj instanceof CompiledCodeObject || obj instanceof BlockClosureObject || obj instanceof EmptyObject || obj instanceof FloatObject ||
+                        obj instanceof LargeIntegerObject;
     }
 
     private void fillInContextObjects() {
-        for (final SqueakImageChunk chunk : chunktable.values()) {
+        chunktable.forEach(chunk -> {
             final Object chunkObject = chunk.asObject();
             if (chunkObject instanceof ContextObject) {
                 final ContextObject contextObject = (ContextObject) chunkObject;
                 assert !contextObject.hasTruffleFrame();
                 contextObject.fillinContext(chunk);
             }
-        }
+        });
     }
 
     private void fillInSmallFloatClass() {
@@ -9,6 +9,9 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
@@ -16,6 +19,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.TruffleFile;
@@ -42,14 +47,21 @@ import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils;
 import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
 public final class SqueakImageWriter {
+    /* Upper bound for the size of a mapped range written by a single task. */
+    private static final long MAX_PARALLEL_RANGE_SIZE = 1L << 30;
+    private static final long MIN_PARALLEL_RANGE_SIZE = 1L << 20;
+
     private final SqueakImageContext image;
     private final NativeObject freeList;
     private final BufferedOutputStream stream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final SqueakImageWriter root;
     private final byte[] byteArrayBuffer = new byte[Long.BYTES];
-    private final HashMap<AbstractSqueakObjectWithHash, Long> oopMap = new HashMap<>(ObjectGraphUtils.getLastSeenObjects());
-    private final ArrayList<AbstractSqueakObjectWithHash> allTracedObjects = new ArrayList<>(ObjectGraphUtils.getLastSeenObjects());
-    private final ArrayDeque<AbstractSqueakObjectWithHash> traceQueue = new ArrayDeque<>();
-    private final ArrayList<AbstractSqueakObjectWithHash> additionalBoxedObjects = new ArrayList<>();
+    private final HashMap<AbstractSqueakObjectWithHash, Long> oopMap;
+    private final ArrayList<AbstractSqueakObjectWithHash> allTracedObjects;
+    private final ArrayDeque<AbstractSqueakObjectWithHash> traceQueue;
+    private final ArrayList<AbstractSqueakObjectWithHash> additionalBoxedObjects;
 
     private long position;
     private long nextChunk;
@@ -65,8 +77,50 @@ public final class SqueakImageWriter {
     private SqueakImageWriter(final SqueakImageContext image) throws IOException {
         this.image = image;
         final TruffleFile truffleFile = image.env.getPublicTruffleFile(image.getImagePath());
-        stream = new BufferedOutputStream(truffleFile.newOutputStream());
+        channel = image.options.parallelImageWriting ? openFileChannel(truffleFile) : null;
+        stream = channel == null ? new BufferedOutputStream(truffleFile.newOutputStream()) : null;
+        buffer = null;
+        root = this;
         freeList = NativeObject.newNativeLongs(image, image.nilClass /* ignored */, SqueakImageConstants.NUM_FREE_LISTS);
+        oopMap = new HashMap<>(ObjectGraphUtils.getLastSeenObjects());
+        allTracedObjects = new ArrayList<>(ObjectGraphUtils.getLastSeenObjects());
+        traceQueue = new ArrayDeque<>();
+        additionalBoxedObjects = new ArrayList<>();
+    }
+
+    /* Creates a writer for a range of the image file that shares all tracing results with parent. */
+    private SqueakImageWriter(final SqueakImageWriter parent, final ByteBuffer buffer, final long position) {
+        image = parent.image;
+        channel = null;
+        stream = null;
+        this.buffer = buffer;
+        root = parent;
+        freeList = parent.freeList;
+        oopMap = parent.oopMap;
+        allTracedObjects = parent.allTracedObjects;
+        traceQueue = parent.traceQueue;
+        additionalBoxedObjects = parent.additionalBoxedObjects;
+        this.position = position;
+        nextChunkAfterTracing = parent.nextChunkAfterTracing;
+        nilOop = parent.nilOop;
+        falseOop = parent.falseOop;
+        trueOop = parent.trueOop;
+        specialObjectOop = parent.specialObjectOop;
+        freeListOop = parent.freeListOop;
+        hiddenRootsOop = parent.hiddenRootsOop;
+    }
+
+    /** Returns a {@link FileChannel} for the image or `null` if the file system does not provide one. */
+    private FileChannel openFileChannel(final TruffleFile truffleFile) throws IOException {
+        final EnumSet<StandardOpenOption> options = EnumSet.<StandardOpenOption> of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                        StandardOpenOption.READ);
+        final SeekableByteChannel byteChannel = truffleFile.newByteChannel(options);
+        if (byteChannel instanceof FileChannel) {
+            return (FileChannel) byteChannel;
+        }
+        image.printToStdErr("Image cannot be memory-mapped, falling back to sequential image writing.");
+        byteChannel.close();
+        return null;
     }
 
     /*
@@ -93,8 +147,12 @@ public final class SqueakImageWriter {
             /* Mark thisContext as suspended during tracing and writing. */
             AbstractPointersObjectWriteNode.getUncached().execute(activeProcess, PROCESS.SUSPENDED_CONTEXT, thisContext);
             traceObjects();
-            writeImageHeader();
-            writeBody();
+            if (channel != null) {
+                writeInParallel();
+            } else {
+                writeImageHeader();
+                writeBody();
+            }
         } finally {
             /* Unmark thisContext as suspended. */
             AbstractPointersObjectWriteNode.getUncached().executeNil(activeProcess, PROCESS.SUSPENDED_CONTEXT);
@@ -172,6 +230,18 @@ public final class SqueakImageWriter {
     }
 
     private void writeBody() {
+        writeFirstObjects();
+        AbstractSqueakObjectWithHash previousObject = image.getHiddenRoots();
+        for (final AbstractSqueakObjectWithHash currentObject : allTracedObjects) {
+            assert correctPosition(currentObject) : "Previous object was not written correctly: " + previousObject;
+            currentObject.write(this);
+            previousObject = currentObject;
+        }
+        assert currentOop() == nextChunkAfterTracing;
+        writeAdditionalBoxedObjectsAndBridge();
+    }
+
+    private void writeFirstObjects() {
         assert position == SqueakImageConstants.IMAGE_HEADER_SIZE;
         NilObject.SINGLETON.write(this);
         assert currentOop() == falseOop;
@@ -184,23 +254,90 @@ public final class SqueakImageWriter {
         assert currentOop() == hiddenRootsOop - SqueakImageConstants.WORD_SIZE;
         image.getHiddenRoots().writeAsHiddenRoots(this);
         assert currentOop() == specialObjectOop : "First objects not written correctly";
-        AbstractSqueakObjectWithHash previousObject = image.getHiddenRoots();
-        for (final AbstractSqueakObjectWithHash currentObject : allTracedObjects) {
-            assert correctPosition(currentObject) : "Previous object was not written correctly: " + previousObject;
-            currentObject.write(this);
-            previousObject = currentObject;
-        }
-        assert currentOop() == nextChunkAfterTracing;
+    }
+
+    private void writeAdditionalBoxedObjectsAndBridge() {
         /* Write additional large integers and boxed floats. */
         for (final AbstractSqueakObjectWithHash value : additionalBoxedObjects) {
             value.write(this);
         }
-        assert currentOop() == nextChunk;
+        assert currentOop() == root.nextChunk;
 
         /* Write last bridge. */
         writePadding(SqueakImageConstants.IMAGE_BRIDGE_SIZE);
     }
 
+    /**
+     * All object offsets are known after tracing, so the traced objects are split into ranges that
+     * are serialized concurrently into disjoint mapped regions of the image file. Large integers
+     * and boxed floats that are reserved while writing are appended afterwards.
+     */
+    private void writeInParallel() {
+        final long bodyStart = filePositionOf(allTracedObjects.get(0));
+        final long bodyEnd = nextChunkAfterTracing - image.flags.getOldBaseAddress() + SqueakImageConstants.IMAGE_HEADER_SIZE;
+        final SqueakImageWriter headerWriter = new SqueakImageWriter(this, map(0, bodyStart), 0);
+        headerWriter.writeImageHeader();
+        headerWriter.writeFirstObjects();
+        assert headerWriter.position == bodyStart;
+
+        final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        final long rangeSize = Math.min(MAX_PARALLEL_RANGE_SIZE, Math.max(MIN_PARALLEL_RANGE_SIZE, (bodyEnd - bodyStart) / (4L * parallelism)));
+        final ArrayList<Integer> rangeStarts = new ArrayList<>();
+        int nextIndex = 0;
+        while (nextIndex < allTracedObjects.size()) {
+            rangeStarts.add(nextIndex);
+            nextIndex = indexOfFirstObjectAtOrAfter(filePositionOf(allTracedObjects.get(nextIndex)) + rangeSize, nextIndex + 1);
+        }
+        rangeStarts.add(allTracedObjects.size());
+        IntStream.range(0, rangeStarts.size() - 1).parallel().forEach(i -> {
+            final int from = rangeStarts.get(i);
+            final int to = rangeStarts.get(i + 1);
+            final long start = filePositionOf(allTracedObjects.get(from));
+            final long end = to < allTracedObjects.size() ? filePositionOf(allTracedObjects.get(to)) : bodyEnd;
+            final SqueakImageWriter rangeWriter = new SqueakImageWriter(this, map(start, end - start), start);
+            for (int j = from; j < to; j++) {
+                allTracedObjects.get(j).write(rangeWriter);
+            }
+            assert rangeWriter.position == end : "Objects not written correctly";
+        });
+
+        /* All boxed objects have been reserved at this point. */
+        final long tailSize = nextChunk - nextChunkAfterTracing + SqueakImageConstants.IMAGE_BRIDGE_SIZE;
+        final SqueakImageWriter tailWriter = new SqueakImageWriter(this, map(bodyEnd, tailSize), bodyEnd);
+        tailWriter.writeAdditionalBoxedObjectsAndBridge();
+        position = tailWriter.position;
+    }
+
+    private ByteBuffer map(final long start, final long size) {
+        assert size <= Integer.MAX_VALUE;
+        try {
+            return channel.map(MapMode.READ_WRITE, start, size).order(ByteOrder.nativeOrder());
+        } catch (final IOException e) {
+            throw SqueakAbortException.create("Failed to map image file:", e.getMessage());
+        }
+    }
+
+    /* Traced objects are reserved in order, so their file positions are ascending. */
+    private int indexOfFirstObjectAtOrAfter(final long targetPosition, final int fromIndex) {
+        int low = fromIndex;
+        int high = allTracedObjects.size();
+        while (low < high) {
+            final int mid = low + high >>> 1;
+            if (filePositionOf(allTracedObjects.get(mid)) < targetPosition) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /* Position of the first header word of a traced object in the image file. */
+    private long filePositionOf(final AbstractSqueakObjectWithHash object) {
+        final int offset = object.getNumSlots() < SqueakImageConstants.OVERFLOW_SLOTS ? 0 : SqueakImageConstants.WORD_SIZE;
+        return oopMap.get(object) - offset - image.flags.getOldBaseAddress() + SqueakImageConstants.IMAGE_HEADER_SIZE;
+    }
+
     private boolean correctPosition(final AbstractSqueakObjectWithHash currentObject) {
         final int offset = currentObject.getNumSlots() < SqueakImageConstants.OVERFLOW_SLOTS ? 0 : SqueakImageConstants.WORD_SIZE;
         return currentOop() + offset == oopMap.get(currentObject);
@@ -327,28 +464,30 @@ public final class SqueakImageWriter {
     }
 
     private long reserveLargeInteger(final long value) {
-        final LargeIntegerObject largeIntegerObject = new LargeIntegerObject(image, BigInteger.valueOf(value));
-        final long oop = nextChunk;
-        final int numSlots = largeIntegerObject.getNumSlots();
-        final int headerSlots = numSlots < 255 ? 1 : 2;
-        nextChunk += (headerSlots + numSlots) * SqueakImageConstants.WORD_SIZE /* No padding */;
-
-        additionalBoxedObjects.add(largeIntegerObject);
-        return oop;
+        return root.reserveBoxedObject(new LargeIntegerObject(image, BigInteger.valueOf(value)));
     }
 
     private long reserveBoxedFloat(final double value) {
-        final FloatObject floatObject = new FloatObject(image, value);
+        return root.reserveBoxedObject(new FloatObject(image, value));
+    }
+
+    /* Synchronized because range writers reserve boxed objects concurrently. */
+    private synchronized long reserveBoxedObject(final AbstractSqueakObjectWithHash boxedObject) {
         final long oop = nextChunk;
-        final int numSlots = floatObject.getNumSlots();
+        final int numSlots = boxedObject.getNumSlots();
         final int headerSlots = numSlots < 255 ? 1 : 2;
         nextChunk += (headerSlots + numSlots) * SqueakImageConstants.WORD_SIZE /* No padding */;
 
-        additionalBoxedObjects.add(floatObject);
+        additionalBoxedObjects.add(boxedObject);
         return oop;
     }
 
     public void writeBytes(final byte[] bytes) {
+        if (buffer != null) {
+            buffer.put(bytes);
+            position += bytes.length;
+            return;
+        }
         try {
             stream.write(bytes);
         } catch (final IOException e) {
@@ -373,6 +512,10 @@ public final class SqueakImageWriter {
     }
 
     private int writeBytesFromBuffer(final int numberOfBytes) {
+        if (buffer != null) {
+            buffer.put(byteArrayBuffer, 0, numberOfBytes);
+            return numberOfBytes;
+        }
         try {
             stream.write(byteArrayBuffer, 0, numberOfBytes);
         } catch (final IOException e) {
@@ -382,6 +525,13 @@ public final class SqueakImageWriter {
     }
 
     public void writePadding(final int byteLength) {
+        if (buffer != null) {
+            for (int i = 0; i < byteLength; i++) {
+                buffer.put((byte) 0);
+            }
+            position += byteLength;
+            return;
+        }
         try {
             for (int i = 0; i < byteLength; i++) {
                 stream.write(0);
@@ -479,7 +629,11 @@ public final class SqueakImageWriter {
 
     private void closeStream() {
         try {
-            stream.close();
+            if (channel != null) {
+                channel.close();
+            } else {
+                stream.close();
+            }
         } catch (final IOException e) {
             throw SqueakAbortException.create("Failed to close file:", e.getMessage());
         }
@@ -54,6 +54,14 @@ public abstract class LookupMethodByStringNode extends AbstractNode {
                      */
                     @Cached final AbstractPointersObjectReadNode pointersReadValuesNode,
                     @Cached final ArrayObjectReadNode arrayReadNode) {
+        final NativeObject symbol = classObject.image.symbolTable.lookup(selector);
+        if (symbol != null) {
+            final Object method = classObject.lookupInMethodDictSlow(symbol);
+            if (method != null) {
+                return method;
+            }
+            /* Method dictionaries may use another symbol with the same contents. */
+        }
         final byte[] selectorBytes = MiscUtils.toBytes(selector);
         ClassObject lookupClass = classObject;
         while (lookupClass != null) {
@@ -61,7 +69,9 @@ public abstract class LookupMethodByStringNode extends AbstractNode {
             final Object[] methodDictVariablePart = methodDict.getVariablePart();
             for (int i = 0; i < methodDictVariablePart.length; i++) {
                 final Object methodSelector = methodDictVariablePart[i];
-                if (methodSelector instanceof NativeObject && Arrays.equals(selectorBytes, ((NativeObject) methodSelector).getByteStorage())) {
+                if (methodSelector instanceof NativeObject && ((NativeObject) methodSelector).isByteType() &&
+                                Arrays.equals(selectorBytes, ((NativeObject) methodSelector).getByteStorage())) {
+                    classObject.image.symbolTable.register(methodSelector);
                     return arrayReadNode.execute(pointersReadValuesNode.executeArray(methodDict, METHOD_DICT.VALUES), i);
                 }
             }
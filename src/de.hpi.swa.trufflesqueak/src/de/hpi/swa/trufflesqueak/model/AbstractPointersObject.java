@@ -21,6 +21,7 @@ import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.Abst
 import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.AbstractPointersObjectWriteNode;
 import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectIdentityNode;
 import de.hpi.swa.trufflesqueak.util.ArrayUtils;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
 import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
@@ -311,30 +312,18 @@ public abstract class AbstractPointersObject extends AbstractSqueakObjectWithCla
         return false;
     }
 
-    protected final void layoutValuesBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
-        for (int i = 0; i < from.length; i++) {
-            final Object fromPointer = from[i];
-            if (object0 == fromPointer) {
-                object0 = to[i];
-                copyHash(fromPointer, to[i], copyHash);
-            }
-            if (object1 == fromPointer) {
-                object1 = to[i];
-                copyHash(fromPointer, to[i], copyHash);
-            }
-            if (object2 == fromPointer) {
-                object2 = to[i];
-                copyHash(fromPointer, to[i], copyHash);
-            }
-            if (objectExtension != null) {
-                for (int j = 0; j < objectExtension.length; j++) {
-                    final Object object = objectExtension[j];
-                    if (object == fromPointer) {
-                        objectExtension[j] = to[i];
-                        copyHash(fromPointer, to[i], copyHash);
-                    }
-                }
-            }
+    protected final void layoutValuesBecomeOneWay(final ForwardingTable table) {
+        if (object0 != null) {
+            object0 = table.forward(object0);
+        }
+        if (object1 != null) {
+            object1 = table.forward(object1);
+        }
+        if (object2 != null) {
+            object2 = table.forward(object2);
+        }
+        if (objectExtension != null) {
+            table.forwardAll(objectExtension);
         }
     }
 
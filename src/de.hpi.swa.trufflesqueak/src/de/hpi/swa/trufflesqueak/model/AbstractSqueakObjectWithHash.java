@@ -12,29 +12,34 @@ import de.hpi.swa.trufflesqueak.image.SqueakImageChunk;
 import de.hpi.swa.trufflesqueak.image.SqueakImageConstants;
 import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.image.SqueakImageWriter;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
+import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
 public abstract class AbstractSqueakObjectWithHash extends AbstractSqueakObject {
     public static final int IDENTITY_HASH_MASK = 0x400000 - 1;
     /* Generate new hash if hash is 0 (see SpurMemoryManager>>#hashBitsOf:). */
     public static final long HASH_UNINITIALIZED = 0;
 
+    /* Marking flag is stored as an int (0 or 1), so that it can be compared and swapped. */
+    private static final long MARKING_FLAG_ADDRESS = UnsafeUtils.getDeclaredFieldAddress(AbstractSqueakObjectWithHash.class, "markingFlag");
+
     public final SqueakImageContext image;
     private long squeakHash;
-    private boolean markingFlag;
+    private int markingFlag;
 
     // For special/well-known objects only.
     protected AbstractSqueakObjectWithHash(final SqueakImageContext image) {
         this.image = image;
         squeakHash = HASH_UNINITIALIZED;
-        markingFlag = image.getCurrentMarkingFlag();
+        markingFlag = toMarkingBit(image.getCurrentMarkingFlag());
     }
 
     protected AbstractSqueakObjectWithHash(final SqueakImageContext image, final long hash) {
         this.image = image;
         assert hash >= 0 : "Squeak hashes should not be negative (will mess up object headers)";
         squeakHash = hash;
-        markingFlag = image.getCurrentMarkingFlag();
+        markingFlag = toMarkingBit(image.getCurrentMarkingFlag());
     }
 
     protected AbstractSqueakObjectWithHash(final AbstractSqueakObjectWithHash original) {
@@ -95,43 +100,44 @@ public abstract class AbstractSqueakObjectWithHash extends AbstractSqueakObject
         squeakHash = newHash;
     }
 
+    private static int toMarkingBit(final boolean flag) {
+        return flag ? 1 : 0;
+    }
+
     public final boolean getMarkingFlag() {
-        return markingFlag;
+        return markingFlag != 0;
     }
 
     public final boolean isMarked(final boolean currentMarkingFlag) {
-        return markingFlag == currentMarkingFlag;
+        return markingFlag == toMarkingBit(currentMarkingFlag);
     }
 
     /**
      * @return <tt>false</tt> if already marked, <tt>true</tt> otherwise
      */
     public final boolean tryToMark(final boolean currentMarkingFlag) {
-        if (markingFlag == currentMarkingFlag) {
+        final int markingBit = toMarkingBit(currentMarkingFlag);
+        if (markingFlag == markingBit) {
             return false;
         } else {
-            markingFlag = currentMarkingFlag;
+            markingFlag = markingBit;
             return true;
         }
     }
 
-    @SuppressWarnings("unused")
-    public void pointersBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
-        // Do nothing by default.
+    /**
+     * Same as {@link #tryToMark(boolean)}, but safe to use from multiple tracing threads.
+     *
+     * @return <tt>false</tt> if already marked, <tt>true</tt> otherwise
+     */
+    public final boolean tryToMarkAtomically(final boolean currentMarkingFlag) {
+        final int markingBit = toMarkingBit(currentMarkingFlag);
+        return markingFlag != markingBit && UnsafeUtils.compareAndSwapIntAt(this, MARKING_FLAG_ADDRESS, 1 - markingBit, markingBit);
     }
 
-    protected static final void pointersBecomeOneWay(final Object[] target, final Object[] from, final Object[] to, final boolean copyHash) {
-        for (int i = 0; i < from.length; i++) {
-            final Object fromPointer = from[i];
-            for (int j = 0; j < target.length; j++) {
-                final Object newPointer = target[j];
-                if (newPointer == fromPointer) {
-                    final Object toPointer = to[i];
-                    target[j] = toPointer;
-                    copyHash(fromPointer, toPointer, copyHash);
-                }
-            }
-        }
+    @SuppressWarnings("unused")
+    public void pointersBecomeOneWay(final ForwardingTable table) {
+        // Do nothing by default.
     }
 
     public static final void copyHash(final Object from, final Object to, final boolean copyHash) {
@@ -25,6 +25,7 @@ import de.hpi.swa.trufflesqueak.image.SqueakImageWriter;
 import de.hpi.swa.trufflesqueak.interop.WrapToSqueakNode;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.BLOCK_CLOSURE;
 import de.hpi.swa.trufflesqueak.util.ArrayUtils;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.FrameAccess;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
 
@@ -225,21 +226,14 @@ public final class BlockClosureObject extends AbstractSqueakObjectWithHash {
     }
 
     @Override
-    public void pointersBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
-        for (int i = 0; i < from.length; i++) {
-            final Object fromPointer = from[i];
-            if (getOuterContextOrNull() == fromPointer && fromPointer != to[i] && to[i] instanceof ContextObject) {
-                setOuterContext((ContextObject) to[i]);
-                copyHash(fromPointer, to[i], copyHash);
-            }
-            for (int j = 0; j < getCopied().length; j++) {
-                final Object copiedValue = getCopied()[j];
-                if (copiedValue == fromPointer) {
-                    getCopied()[j] = to[i];
-                    copyHash(fromPointer, to[i], copyHash);
-                }
+    public void pointersBecomeOneWay(final ForwardingTable table) {
+        if (outerContext != null) {
+            final Object newOuterContext = table.forward(outerContext);
+            if (newOuterContext != outerContext && newOuterContext instanceof ContextObject) {
+                setOuterContext((ContextObject) newOuterContext);
             }
         }
+        table.forwardAll(getCopied());
     }
 
     @Override
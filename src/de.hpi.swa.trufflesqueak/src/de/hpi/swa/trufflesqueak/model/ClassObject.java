@@ -44,6 +44,8 @@ import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.Abst
 import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectClassNode;
 import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectNewNode;
 import de.hpi.swa.trufflesqueak.util.ArrayUtils;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
+import de.hpi.swa.trufflesqueak.util.InstanceRegistry;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
 
 /*
@@ -65,6 +67,8 @@ public final class ClassObject extends AbstractSqueakObjectWithClassAndHash {
     private Object[] pointers;
 
     @CompilationFinal private ObjectLayout layout;
+    /* Maintained by the instance registry, `null` unless the instances of this class are indexed. */
+    private volatile InstanceRegistry.Instances registeredInstances;
 
     public ClassObject(final SqueakImageContext image) {
         super(image);
@@ -369,6 +373,14 @@ public final class ClassObject extends AbstractSqueakObjectWithClassAndHash {
         return superclass;
     }
 
+    public InstanceRegistry.Instances getRegisteredInstances() {
+        return registeredInstances;
+    }
+
+    public void setRegisteredInstances(final InstanceRegistry.Instances instances) {
+        registeredInstances = instances;
+    }
+
     public VariablePointersObject getMethodDict() {
         return methodDict;
     }
@@ -581,28 +593,29 @@ public final class ClassObject extends AbstractSqueakObjectWithClassAndHash {
     }
 
     @Override
-    public void pointersBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
-        for (int i = 0; i < from.length; i++) {
-            final Object fromPointer = from[i];
-            if (fromPointer == getSuperclassOrNull() && to[i] instanceof ClassObject) {
-                setSuperclass((ClassObject) to[i]);
-                copyHash(fromPointer, getSuperclassOrNull(), copyHash);
-            }
-            if (fromPointer == getMethodDict() && fromPointer != to[i] && to[i] instanceof VariablePointersObject) {
-                // Only update methodDict if changed to avoid redundant invalidation.
-                setMethodDict((VariablePointersObject) to[i]);
-                copyHash(fromPointer, to[i], copyHash);
-            }
-            if (fromPointer == getInstanceVariablesOrNull() && to[i] instanceof ArrayObject) {
-                setInstanceVariables((ArrayObject) to[i]);
-                copyHash(fromPointer, to[i], copyHash);
-            }
-            if (fromPointer == getOrganizationOrNull() && to[i] instanceof PointersObject) {
-                setOrganization((PointersObject) to[i]);
-                copyHash(fromPointer, to[i], copyHash);
-            }
+    public void pointersBecomeOneWay(final ForwardingTable table) {
+        final ClassObject oldSuperclass = getSuperclassOrNull();
+        final Object newSuperclass = table.forward(oldSuperclass);
+        if (newSuperclass != oldSuperclass && newSuperclass instanceof ClassObject) {
+            setSuperclass((ClassObject) newSuperclass);
+        }
+        final VariablePointersObject oldMethodDict = getMethodDict();
+        final Object newMethodDict = table.forward(oldMethodDict);
+        if (newMethodDict != oldMethodDict && newMethodDict instanceof VariablePointersObject) {
+            // Only update methodDict if changed to avoid redundant invalidation.
+            setMethodDict((VariablePointersObject) newMethodDict);
+        }
+        final ArrayObject oldInstanceVariables = getInstanceVariablesOrNull();
+        final Object newInstanceVariables = table.forward(oldInstanceVariables);
+        if (newInstanceVariables != oldInstanceVariables && newInstanceVariables instanceof ArrayObject) {
+            setInstanceVariables((ArrayObject) newInstanceVariables);
+        }
+        final PointersObject oldOrganization = getOrganizationOrNull();
+        final Object newOrganization = table.forward(oldOrganization);
+        if (newOrganization != oldOrganization && newOrganization instanceof PointersObject) {
+            setOrganization((PointersObject) newOrganization);
         }
-        pointersBecomeOneWay(getOtherPointers(), from, to, copyHash);
+        table.forwardAll(getOtherPointers());
     }
 
     @Override
@@ -31,6 +31,7 @@ import de.hpi.swa.trufflesqueak.SqueakLanguage;
 import de.hpi.swa.trufflesqueak.image.SqueakImageChunk;
 import de.hpi.swa.trufflesqueak.image.SqueakImageConstants;
 import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.image.SqueakImageObjectTable;
 import de.hpi.swa.trufflesqueak.image.SqueakImageWriter;
 import de.hpi.swa.trufflesqueak.interop.WrapToSqueakNode;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.ADDITIONAL_METHOD_STATE;
@@ -42,9 +43,12 @@ import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.Abst
 import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.AbstractPointersObjectWriteNode;
 import de.hpi.swa.trufflesqueak.nodes.dispatch.DispatchUneagerlyNode;
 import de.hpi.swa.trufflesqueak.shared.SqueakLanguageConfig;
+import de.hpi.swa.trufflesqueak.util.ArrayUtils;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.MiscUtils;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
 import de.hpi.swa.trufflesqueak.util.SqueakBytecodeDecoder;
+import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
 @ExportLibrary(InteropLibrary.class)
 public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHash {
@@ -68,6 +72,12 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     // header info and data
     @CompilationFinal(dimensions = 1) protected Object[] literals;
     @CompilationFinal(dimensions = 1) protected byte[] bytes;
+    /* Bytecodes loaded from a shared image are shared with other contexts (copy on write). */
+    private boolean bytesAreShared;
+    /* Raw image data for lazy method loading (literals and bytes are decoded on first access). */
+    @CompilationFinal(dimensions = 1) private byte[] lazyData;
+    /* Cleared last and volatile, so that materialized literals and bytes are safely published. */
+    @CompilationFinal private volatile SqueakImageObjectTable lazyObjectTable;
     @CompilationFinal protected int numArgs;
     @CompilationFinal protected int numLiterals;
     @CompilationFinal protected boolean hasPrimitive;
@@ -140,7 +150,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
         instructionPointerSlot = original.instructionPointerSlot;
         stackPointerSlot = original.stackPointerSlot;
         stackSlots = original.stackSlots;
-        setLiteralsAndBytes(original.literals.clone(), original.bytes.clone());
+        setLiteralsAndBytes(original.getLiterals().clone(), original.getBytes().clone());
         offset = original.offset;
     }
 
@@ -298,13 +308,22 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
         CompilerDirectives.transferToInterpreterAndInvalidate();
         // header is a tagged small integer
         final long header = chunk.getWord(0) >> 3;
+        final SqueakImageObjectTable objectTable = chunk.getReader().getLazyObjectTable();
+        if (objectTable != null) {
+            decodeHeader(MiscUtils.toIntExact(header));
+            lazyData = chunk.getBytes();
+            lazyObjectTable = objectTable;
+            objectTable.addPending(lazyData, numLiterals);
+            return;
+        }
         final int numberOfLiterals = (int) (header & 0x7fff);
         final Object[] ptrs = chunk.getPointers(numberOfLiterals + 1);
         assert literals == null;
         literals = ptrs;
         decodeHeader();
         assert bytes == null;
-        bytes = Arrays.copyOfRange(chunk.getBytes(), ptrs.length * SqueakImageConstants.WORD_SIZE, chunk.getBytes().length);
+        bytes = chunk.getReader().getBytecodes(chunk, ptrs.length * SqueakImageConstants.WORD_SIZE);
+        bytesAreShared = chunk.getReader().sharesBytecodes();
         assert innerBlocks == null : "Should not have any inner blocks yet";
     }
 
@@ -313,8 +332,11 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     }
 
     protected void decodeHeader() {
+        decodeHeader(getHeader());
+    }
+
+    private void decodeHeader(final int header) {
         CompilerDirectives.transferToInterpreterAndInvalidate();
-        final int header = getHeader();
         numLiterals = CompiledCodeHeaderDecoder.getNumLiterals(header);
         hasPrimitive = CompiledCodeHeaderDecoder.getHasPrimitive(header);
         needsLargeFrame = CompiledCodeHeaderDecoder.getNeedsLargeFrame(header);
@@ -347,10 +369,13 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
 
     public void become(final CompiledCodeObject other) {
         CompilerDirectives.transferToInterpreterAndInvalidate();
-        final Object[] literals2 = other.literals;
-        final byte[] bytes2 = other.bytes;
-        other.setLiteralsAndBytes(literals, bytes);
+        final Object[] literals2 = other.getLiterals();
+        final byte[] bytes2 = other.getBytes();
+        final boolean bytesAreShared2 = other.bytesAreShared;
+        other.setLiteralsAndBytes(getLiterals(), getBytes());
+        other.bytesAreShared = bytesAreShared;
         setLiteralsAndBytes(literals2, bytes2);
+        bytesAreShared = bytesAreShared2;
         other.callTargetStable.invalidate();
         callTargetStable.invalidate();
     }
@@ -363,7 +388,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
         final int index = (int) longIndex;
         if (index < getBytecodeOffset() - getOffset()) {
             assert index % SqueakImageConstants.WORD_SIZE == 0;
-            return literals[index / SqueakImageConstants.WORD_SIZE];
+            return getLiterals()[index / SqueakImageConstants.WORD_SIZE];
         } else {
             if (isCompiledBlock()) {
                 return getMethod().at0(longIndex);
@@ -371,7 +396,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
                 assert isCompiledMethod();
                 final int realIndex = index - getBytecodeOffset();
                 assert realIndex >= 0;
-                return Byte.toUnsignedLong(bytes[realIndex]);
+                return Byte.toUnsignedLong(getBytes()[realIndex]);
             }
         }
     }
@@ -389,6 +414,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
             setLiteral(index / SqueakImageConstants.WORD_SIZE, obj);
         } else {
             final int realIndex = index - getBytecodeOffset();
+            final byte[] bytes = getMutableBytes();
             assert realIndex < bytes.length;
             if (obj instanceof Integer) {
                 bytes[realIndex] = (byte) (int) obj;
@@ -401,12 +427,13 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     }
 
     public Object getLiteral(final long longIndex) {
-        return literals[(int) (1 + longIndex)]; // +1 for skipping header.
+        return getLiterals()[(int) (1 + longIndex)]; // +1 for skipping header.
     }
 
     public void setLiteral(final long longIndex, final Object obj) {
         final int index = (int) longIndex;
         CompilerDirectives.transferToInterpreterAndInvalidate();
+        final Object[] literals = getLiterals();
         if (index == 0) {
             assert obj instanceof Long;
             final int oldNumLiterals = numLiterals;
@@ -423,6 +450,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     }
 
     public int primitiveIndex() {
+        final byte[] bytes = getBytes();
         assert hasPrimitive() && bytes.length >= 3;
         return (Byte.toUnsignedInt(bytes[2]) << 8) + Byte.toUnsignedInt(bytes[1]);
     }
@@ -437,7 +465,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
 
     @Override
     public int getNumSlots() {
-        return 1 /* header */ + getNumLiterals() + (int) Math.ceil((double) bytes.length / 8);
+        return 1 /* header */ + getNumLiterals() + (int) Math.ceil((double) getBytes().length / 8);
     }
 
     @Override
@@ -450,7 +478,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
         if (isCompiledBlock()) {
             return getMethodUnsafe().size();
         } else {
-            return getBytecodeOffset() + bytes.length;
+            return getBytecodeOffset() + getBytes().length;
         }
     }
 
@@ -475,13 +503,67 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     }
 
     public Object[] getLiterals() {
+        if (lazyObjectTable != null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            materialize();
+        }
         return literals;
     }
 
+    /* Bytes may be shared with other contexts and must only be modified through getMutableBytes. */
     public byte[] getBytes() {
+        if (lazyObjectTable != null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            materialize();
+        }
         return bytes;
     }
 
+    private byte[] getMutableBytes() {
+        final byte[] currentBytes = getBytes();
+        if (bytesAreShared) {
+            bytes = currentBytes.clone();
+            bytesAreShared = false;
+        }
+        return bytes;
+    }
+
+    @TruffleBoundary
+    private synchronized void materialize() {
+        if (lazyObjectTable == null) {
+            return; /* Materialized by another thread. */
+        }
+        final Object[] ptrs = new Object[1 + numLiterals];
+        for (int i = 0; i < ptrs.length; i++) {
+            ptrs[i] = getLazyLiteral(i);
+        }
+        literals = ptrs;
+        bytes = Arrays.copyOfRange(lazyData, ptrs.length * SqueakImageConstants.WORD_SIZE, lazyData.length);
+        lazyData = null;
+        final SqueakImageObjectTable objectTable = lazyObjectTable;
+        lazyObjectTable = null;
+        objectTable.removePending();
+    }
+
+    /* Decodes a literal from raw image data without materializing the method. */
+    private Object getLazyLiteral(final int index) {
+        return lazyObjectTable.decodePointer(UnsafeUtils.getLong(lazyData, index));
+    }
+
+    /* Returns true if the method has been materialized in the meantime. */
+    private synchronized boolean lazyLiteralsAreForwarded(final ForwardingTable table) {
+        if (lazyObjectTable == null) {
+            return true;
+        }
+        for (int i = 1; i <= numLiterals; i++) {
+            final Object literal = getLazyLiteral(i);
+            if (table.forward(literal) != literal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static long makeHeader(final int numArgs, final int numTemps, final int numLiterals, final boolean hasPrimitive, final boolean needsLargeFrame) {
         return (numArgs & 0x0F) << 24 | (numTemps & 0x3F) << 18 | numLiterals & 0x7FFF | (needsLargeFrame ? 0x20000 : 0) | (hasPrimitive ? 0x10000 : 0);
     }
@@ -512,28 +594,36 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     }
 
     @Override
-    public void pointersBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
-        for (int i = 0; i < from.length; i++) {
-            final Object fromPointer = from[i];
-            for (int j = 0; j < getLiterals().length; j++) {
-                if (fromPointer == getLiterals()[j]) {
-                    final Object toPointer = to[i];
-                    // FIXME: literals are @CompilationFinal, assumption needed (maybe
-                    // pointersBecome should not modify literals at all?).
-                    getLiterals()[j] = toPointer;
-                    copyHash(fromPointer, toPointer, copyHash);
-                }
-            }
+    public void pointersBecomeOneWay(final ForwardingTable table) {
+        if (lazyObjectTable != null && !lazyLiteralsAreForwarded(table)) {
+            return; /* Nothing to rewrite, keep method unmaterialized. */
         }
+        // FIXME: literals are @CompilationFinal, assumption needed (maybe
+        // pointersBecome should not modify literals at all?).
+        table.forwardAll(getLiterals());
     }
 
     @Override
     public void tracePointers(final ObjectTracer tracer) {
+        if (lazyObjectTable != null && traceLazyLiterals(tracer)) {
+            return;
+        }
         for (final Object literal : getLiterals()) {
             tracer.addIfUnmarked(literal);
         }
     }
 
+    /* Returns false if the method has been materialized in the meantime. */
+    private synchronized boolean traceLazyLiterals(final ObjectTracer tracer) {
+        if (lazyObjectTable == null) {
+            return false;
+        }
+        for (int i = 1; i <= numLiterals; i++) {
+            tracer.addIfUnmarked(getLazyLiteral(i));
+        }
+        return true;
+    }
+
     @Override
     public void trace(final SqueakImageWriter writer) {
         super.trace(writer);
@@ -583,6 +673,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
          * through suitable modifications to the compiler and class builder.
          */
         CompilerAsserts.neverPartOfCompilation("Do not use getCompiledInSelector() in compiled code");
+        final Object[] literals = getLiterals();
         final Object penultimateLiteral = literals[literals.length - 2];
         if (penultimateLiteral instanceof NativeObject) {
             return (NativeObject) penultimateLiteral;
@@ -606,6 +697,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
          * may be nil (as would be the case for example of methods providing a pool of inst var
          * accessors).
          */
+        final Object[] literals = getLiterals();
         return (AbstractSqueakObject) literals[literals.length - 1];
     }
 
@@ -670,6 +762,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
 
     public CompiledCodeObject getMethodUnsafe() {
         assert isCompiledBlock();
+        final Object[] literals = getLiterals();
         return (CompiledCodeObject) literals[literals.length - 1];
     }
 
@@ -685,7 +778,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
 
     @ExportMessage
     protected long getArraySize() {
-        return literals.length;
+        return getLiterals().length;
     }
 
     @SuppressWarnings("static-method")
@@ -693,13 +786,13 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     @ExportMessage(name = "isArrayElementModifiable")
     @ExportMessage(name = "isArrayElementInsertable")
     protected boolean isArrayElementReadable(final long index) {
-        return 0 <= index && index < literals.length;
+        return 0 <= index && index < getLiterals().length;
     }
 
     @ExportMessage
     protected Object readArrayElement(final long index) throws InvalidArrayIndexException {
         if (isArrayElementReadable(index)) {
-            return literals[(int) index];
+            return getLiterals()[(int) index];
         } else {
             throw InvalidArrayIndexException.create(index);
         }
@@ -709,7 +802,7 @@ public final class CompiledCodeObject extends AbstractSqueakObjectWithClassAndHa
     protected void writeArrayElement(final long index, final Object value,
                     @Exclusive @Cached final WrapToSqueakNode wrapNode) throws InvalidArrayIndexException {
         if (isArrayElementReadable(index)) {
-            literals[(int) index] = wrapNode.executeWrap(value);
+            getLiterals()[(int) index] = wrapNode.executeWrap(value);
         } else {
             throw InvalidArrayIndexException.create(index);
         }
@@ -34,6 +34,7 @@ import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.Abst
 import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.AbstractPointersObjectWriteNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.MiscellaneousBytecodes.CallPrimitiveNode;
 import de.hpi.swa.trufflesqueak.nodes.process.GetActiveProcessNode;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.FrameAccess;
 import de.hpi.swa.trufflesqueak.util.MiscUtils;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
@@ -601,36 +602,39 @@ public final class ContextObject extends AbstractSqueakObjectWithHash {
     }
 
     @Override
-    public void pointersBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
+    public void pointersBecomeOneWay(final ForwardingTable table) {
         if (hasTruffleFrame()) {
-            for (int i = 0; i < from.length; i++) {
-                final Object fromPointer = from[i];
-                if (fromPointer == getFrameSender() && to[i] instanceof ContextObject) {
-                    setSender((ContextObject) to[i]);
-                    copyHash(fromPointer, to[i], copyHash);
-                }
-                if (fromPointer == getMethod() && to[i] instanceof CompiledCodeObject) {
-                    setMethod((CompiledCodeObject) to[i]);
-                    copyHash(fromPointer, to[i], copyHash);
-                }
-                if (fromPointer == getClosure() && to[i] instanceof BlockClosureObject) {
-                    setClosure((BlockClosureObject) to[i]);
-                    copyHash(fromPointer, to[i], copyHash);
-                }
-                if (fromPointer == getReceiver()) {
-                    setReceiver(to[i]);
-                    copyHash(fromPointer, to[i], copyHash);
+            final Object oldSender = getFrameSender();
+            final Object newSender = table.forward(oldSender);
+            if (newSender != oldSender && newSender instanceof ContextObject) {
+                setSender((ContextObject) newSender);
+            }
+            final CompiledCodeObject oldMethod = getMethod();
+            final Object newMethod = table.forward(oldMethod);
+            if (newMethod != oldMethod && newMethod instanceof CompiledCodeObject) {
+                setMethod((CompiledCodeObject) newMethod);
+            }
+            final BlockClosureObject oldClosure = getClosure();
+            if (oldClosure != null) {
+                final Object newClosure = table.forward(oldClosure);
+                if (newClosure != oldClosure && newClosure instanceof BlockClosureObject) {
+                    setClosure((BlockClosureObject) newClosure);
                 }
-                assert getBlockOrMethod().getStackSlotsUnsafe().length == getBlockOrMethod().getNumStackSlots();
-                for (final FrameSlot slot : getBlockOrMethod().getStackSlotsUnsafe()) {
-                    if (slot == null) {
-                        break; /* Done, this and all following slots have not (yet) been used. */
-                    } else if (truffleFrame.isObject(slot)) {
-                        final Object stackValue = FrameUtil.getObjectSafe(truffleFrame, slot);
-                        if (fromPointer == stackValue) {
-                            truffleFrame.setObject(slot, to[i]);
-                            copyHash(fromPointer, to[i], copyHash);
-                        }
+            }
+            final Object oldReceiver = getReceiver();
+            final Object newReceiver = table.forward(oldReceiver);
+            if (newReceiver != oldReceiver) {
+                setReceiver(newReceiver);
+            }
+            assert getBlockOrMethod().getStackSlotsUnsafe().length == getBlockOrMethod().getNumStackSlots();
+            for (final FrameSlot slot : getBlockOrMethod().getStackSlotsUnsafe()) {
+                if (slot == null) {
+                    break; /* Done, this and all following slots have not (yet) been used. */
+                } else if (truffleFrame.isObject(slot)) {
+                    final Object stackValue = FrameUtil.getObjectSafe(truffleFrame, slot);
+                    final Object newStackValue = table.forward(stackValue);
+                    if (newStackValue != stackValue) {
+                        truffleFrame.setObject(slot, newStackValue);
                     }
                 }
             }
@@ -20,6 +20,7 @@ import de.hpi.swa.trufflesqueak.model.layout.ObjectLayout;
 import de.hpi.swa.trufflesqueak.nodes.SqueakGuards;
 import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.AbstractPointersObjectWriteNode;
 import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectIdentityNode;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils.ObjectTracer;
 import de.hpi.swa.trufflesqueak.util.UnsafeUtils;
 
@@ -123,19 +124,14 @@ public final class WeakVariablePointersObject extends AbstractPointersObject {
     }
 
     @Override
-    public void pointersBecomeOneWay(final Object[] from, final Object[] to, final boolean copyHash) {
-        layoutValuesBecomeOneWay(from, to, copyHash);
+    public void pointersBecomeOneWay(final ForwardingTable table) {
+        layoutValuesBecomeOneWay(table);
         final int variableSize = variablePart.length;
-        if (variableSize > 0) {
-            for (int i = 0; i < from.length; i++) {
-                final Object fromPointer = from[i];
-                for (int j = 0; j < variableSize; j++) {
-                    final Object object = getFromVariablePart(j);
-                    if (object == fromPointer) {
-                        putIntoVariablePartSlow(j, to[i]);
-                        copyHash(fromPointer, to[i], copyHash);
-                    }
-                }
+        for (int i = 0; i < variableSize; i++) {
+            final Object object = getFromVariablePart(i);
+            final Object forwarded = table.forward(object);
+            if (forwarded != object) {
+                putIntoVariablePartSlow(i, forwarded);
             }
         }
     }
@@ -5,13 +5,19 @@
  */
 package de.hpi.swa.trufflesqueak.nodes;
 
+import java.util.Arrays;
+
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.instrumentation.StandardTags;
 import com.oracle.truffle.api.instrumentation.Tag;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
 import com.oracle.truffle.api.nodes.LoopNode;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.api.nodes.RepeatingNode;
 import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.api.source.SourceSection;
 
@@ -40,6 +46,19 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
     private static final boolean DECODE_BYTECODE_ON_DEMAND = true;
     private static final int LOCAL_RETURN_PC = -2;
     private static final int MIN_NUMBER_OF_BYTECODE_FOR_INTERRUPT_CHECKS = 32;
+    /* Activations continue in a loop node (for on-stack replacement) after this many back jumps. */
+    private static final int BACK_JUMPS_BEFORE_LOOP_NODE = 1000;
+    private static final int RESOLVE_ENTRY_PC = -3;
+
+    /* Kinds of bytecode nodes the loop body dispatches on. */
+    private static final byte KIND_UNDECODED = 0;
+    private static final byte KIND_CALL_PRIMITIVE = 1;
+    private static final byte KIND_SEND = 2;
+    private static final byte KIND_CONDITIONAL_JUMP = 3;
+    private static final byte KIND_UNCONDITIONAL_JUMP = 4;
+    private static final byte KIND_RETURN = 5;
+    private static final byte KIND_PUSH_CLOSURE = 6;
+    private static final byte KIND_OTHER = 7;
 
     protected final CompiledCodeObject code;
 
@@ -51,6 +70,9 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
     @Child private HandlePrimitiveFailedNode handlePrimitiveFailedNode;
     @Child private InterruptHandlerNode interruptHandlerNode;
     @Child private MaterializeContextOnMethodExitNode materializeContextOnMethodExitNode;
+    @Child private LoopNode dispatchLoopNode;
+    @CompilationFinal(dimensions = 1) private int[] entryPCs = new int[0];
+    @CompilationFinal(dimensions = 1) private final byte[] bytecodeKinds;
 
     private SourceSection section;
 
@@ -61,6 +83,10 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
         } else {
             bytecodeNodes = SqueakBytecodeDecoder.decode(code);
         }
+        bytecodeKinds = new byte[bytecodeNodes.length];
+        for (int i = 0; i < bytecodeNodes.length; i++) {
+            bytecodeKinds[i] = kindOf(bytecodeNodes[i]);
+        }
         frameInitializationNode = resume ? null : FrameStackInitializationNode.create();
         /*
          * Only check for interrupts if method is relatively large. Avoid check if a closure is
@@ -160,15 +186,7 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
                         pc = LOCAL_RETURN_PC;
                         continue bytecode_loop;
                     } catch (final PrimitiveFailed e) {
-                        /* getHandlePrimitiveFailedNode() also acts as a BranchProfile. */
-                        getHandlePrimitiveFailedNode().executeHandle(frame, e.getReasonCode());
-                        /*
-                         * Same toString() methods may throw compilation warnings, this is expected
-                         * and ok for primitive failure logging purposes. Note that primitives that
-                         * are not implemented are also not logged.
-                         */
-                        LogUtils.PRIMITIVES.fine(() -> callPrimitiveNode.primitiveNode.getClass().getSimpleName() + " failed (arguments: " +
-                                        ArrayUtils.toJoinedString(", ", FrameAccess.getReceiverAndArguments(frame)) + ")");
+                        handlePrimitiveFailed(frame, callPrimitiveNode, e);
                         /* continue with fallback code. */
                     }
                 }
@@ -196,6 +214,9 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
                     final int successor = jumpNode.getJumpSuccessorIndex();
                     if (CompilerDirectives.inInterpreter() && successor <= pc) {
                         backJumpCounter++;
+                        if (backJumpCounter >= BACK_JUMPS_BEFORE_LOOP_NODE) {
+                            return continueInLoopNode(frame, successor, backJumpCounter);
+                        }
                     }
                     pc = successor;
                     continue bytecode_loop;
@@ -203,6 +224,9 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
                     final int successor = jumpNode.getSuccessorIndex();
                     if (CompilerDirectives.inInterpreter() && successor <= pc) {
                         backJumpCounter++;
+                        if (backJumpCounter >= BACK_JUMPS_BEFORE_LOOP_NODE) {
+                            return continueInLoopNode(frame, successor, backJumpCounter);
+                        }
                     }
                     pc = successor;
                     continue bytecode_loop;
@@ -211,6 +235,9 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
                 final int successor = ((UnconditionalJumpNode) node).getJumpSuccessor();
                 if (CompilerDirectives.inInterpreter() && successor <= pc) {
                     backJumpCounter++;
+                    if (backJumpCounter >= BACK_JUMPS_BEFORE_LOOP_NODE) {
+                        return continueInLoopNode(frame, successor, backJumpCounter);
+                    }
                 }
                 pc = successor;
                 continue bytecode_loop;
@@ -237,6 +264,158 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
         return returnValue;
     }
 
+    /*
+     * Runs the activation in the loop node, which Truffle compiles through on-stack replacement.
+     * The pc is kept in the instruction pointer slot between iterations of the loop node.
+     */
+    private Object dispatchBytecodeLoop(final VirtualFrame frame, final int initialPC) {
+        FrameAccess.setInstructionPointer(frame, code, initialPC);
+        final Object returnValue = dispatchLoopNode.execute(frame);
+        assert returnValue != null && !hasModifiedSender(frame);
+        FrameAccess.terminate(frame, code.getInstructionPointerSlot());
+        return returnValue;
+    }
+
+    /*
+     * Hot loops of activations that are never re-entered would not get compiled. Therefore, such
+     * activations continue in a loop node, which is compiled through on-stack replacement.
+     */
+    private Object continueInLoopNode(final VirtualFrame frame, final int pc, final int backJumpCounter) {
+        LoopNode.reportLoopCount(this, backJumpCounter);
+        if (dispatchLoopNode == null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            dispatchLoopNode = insert(Truffle.getRuntime().createLoopNode(new DispatchBytecodesNode(this)));
+        }
+        return dispatchBytecodeLoop(frame, pc);
+    }
+
+    /*
+     * Body of the loop node, returns the return value of the method or CONTINUE_LOOP_STATUS after a
+     * back jump. The pc in the frame is resolved to one of the entry pcs seen so far (the start of
+     * the method, loop headers, and resume pcs), so that the bytecodes are exploded from a constant
+     * pc and every bytecode is dispatched with a switch over its kind.
+     */
+    @ExplodeLoop(kind = ExplodeLoop.LoopExplosionKind.MERGE_EXPLODE)
+    private Object dispatchBytecodesUntilBackJump(final VirtualFrame frame) {
+        int pc = RESOLVE_ENTRY_PC;
+        bytecode_loop_osr: while (true) {
+            CompilerAsserts.partialEvaluationConstant(pc);
+            if (pc == RESOLVE_ENTRY_PC) {
+                final int entryPC = FrameAccess.getInstructionPointer(frame, code);
+                for (int i = 0; i < entryPCs.length; i++) {
+                    if (entryPCs[i] == entryPC) {
+                        pc = entryPCs[i];
+                        continue bytecode_loop_osr;
+                    }
+                }
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                entryPCs = Arrays.copyOf(entryPCs, entryPCs.length + 1);
+                entryPCs[entryPCs.length - 1] = entryPC;
+                pc = entryPC;
+                continue bytecode_loop_osr;
+            }
+            final AbstractBytecodeNode node = fetchNextBytecodeNode(pc);
+            switch (bytecodeKinds[pc]) {
+                case KIND_CALL_PRIMITIVE: {
+                    final CallPrimitiveNode callPrimitiveNode = (CallPrimitiveNode) node;
+                    if (callPrimitiveNode.primitiveNode != null) {
+                        try {
+                            return callPrimitiveNode.primitiveNode.executePrimitive(frame);
+                        } catch (final PrimitiveFailed e) {
+                            handlePrimitiveFailed(frame, callPrimitiveNode, e);
+                            /* continue with fallback code. */
+                        }
+                    }
+                    pc = callPrimitiveNode.getSuccessorIndex();
+                    continue bytecode_loop_osr;
+                }
+                case KIND_SEND: {
+                    pc = node.getSuccessorIndex();
+                    FrameAccess.setInstructionPointer(frame, code, pc);
+                    node.executeVoid(frame);
+                    final int actualNextPc = FrameAccess.getInstructionPointer(frame, code);
+                    if (pc != actualNextPc) {
+                        /* Context was restarted, continue in interpreter (see startBytecode). */
+                        CompilerDirectives.transferToInterpreter();
+                        pc = actualNextPc;
+                    }
+                    continue bytecode_loop_osr;
+                }
+                case KIND_CONDITIONAL_JUMP: {
+                    final ConditionalJumpNode jumpNode = (ConditionalJumpNode) node;
+                    if (jumpNode.executeCondition(frame)) {
+                        final int successor = jumpNode.getJumpSuccessorIndex();
+                        if (successor <= pc) {
+                            FrameAccess.setInstructionPointer(frame, code, successor);
+                            return RepeatingNode.CONTINUE_LOOP_STATUS;
+                        }
+                        pc = successor;
+                    } else {
+                        final int successor = jumpNode.getSuccessorIndex();
+                        if (successor <= pc) {
+                            FrameAccess.setInstructionPointer(frame, code, successor);
+                            return RepeatingNode.CONTINUE_LOOP_STATUS;
+                        }
+                        pc = successor;
+                    }
+                    continue bytecode_loop_osr;
+                }
+                case KIND_UNCONDITIONAL_JUMP: {
+                    final int successor = ((UnconditionalJumpNode) node).getJumpSuccessor();
+                    if (successor <= pc) {
+                        FrameAccess.setInstructionPointer(frame, code, successor);
+                        return RepeatingNode.CONTINUE_LOOP_STATUS;
+                    }
+                    pc = successor;
+                    continue bytecode_loop_osr;
+                }
+                case KIND_RETURN:
+                    return ((AbstractReturnNode) node).executeReturn(frame);
+                case KIND_PUSH_CLOSURE: {
+                    final PushClosureNode pushClosureNode = (PushClosureNode) node;
+                    pushClosureNode.executePush(frame);
+                    pc = pushClosureNode.getClosureSuccessorIndex();
+                    continue bytecode_loop_osr;
+                }
+                default:
+                    /* All other bytecode nodes. */
+                    node.executeVoid(frame);
+                    pc = node.getSuccessorIndex();
+                    continue bytecode_loop_osr;
+            }
+        }
+    }
+
+    private static final class DispatchBytecodesNode extends Node implements RepeatingNode {
+        private final ExecuteContextNode executeContextNode;
+
+        private DispatchBytecodesNode(final ExecuteContextNode executeContextNode) {
+            this.executeContextNode = executeContextNode;
+        }
+
+        @Override
+        public boolean executeRepeating(final VirtualFrame frame) {
+            return executeRepeatingWithValue(frame) == CONTINUE_LOOP_STATUS;
+        }
+
+        @Override
+        public Object executeRepeatingWithValue(final VirtualFrame frame) {
+            return executeContextNode.dispatchBytecodesUntilBackJump(frame);
+        }
+    }
+
+    private void handlePrimitiveFailed(final VirtualFrame frame, final CallPrimitiveNode callPrimitiveNode, final PrimitiveFailed e) {
+        /* getHandlePrimitiveFailedNode() also acts as a BranchProfile. */
+        getHandlePrimitiveFailedNode().executeHandle(frame, e.getReasonCode());
+        /*
+         * Same toString() methods may throw compilation warnings, this is expected and ok for
+         * primitive failure logging purposes. Note that primitives that are not implemented are
+         * also not logged.
+         */
+        LogUtils.PRIMITIVES.fine(() -> callPrimitiveNode.primitiveNode.getClass().getSimpleName() + " failed (arguments: " +
+                        ArrayUtils.toJoinedString(", ", FrameAccess.getReceiverAndArguments(frame)) + ")");
+    }
+
     private HandlePrimitiveFailedNode getHandlePrimitiveFailedNode() {
         if (handlePrimitiveFailedNode == null) {
             CompilerDirectives.transferToInterpreterAndInvalidate();
@@ -251,6 +430,7 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
     private Object resumeBytecode(final VirtualFrame frame, final long initialPC) {
         assert initialPC > 0 : "Trying to resume a fresh/terminated/illegal context";
         int pc = (int) initialPC;
+        int backJumpCounter = 0;
         Object returnValue = null;
         bytecode_loop_slow: while (pc != LOCAL_RETURN_PC) {
             final AbstractBytecodeNode node = fetchNextBytecodeNode(pc);
@@ -272,14 +452,26 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
             } else if (node instanceof ConditionalJumpNode) {
                 final ConditionalJumpNode jumpNode = (ConditionalJumpNode) node;
                 if (jumpNode.executeCondition(frame)) {
-                    pc = jumpNode.getJumpSuccessorIndex();
+                    final int successor = jumpNode.getJumpSuccessorIndex();
+                    if (successor <= pc && ++backJumpCounter >= BACK_JUMPS_BEFORE_LOOP_NODE) {
+                        return continueInLoopNode(frame, successor, backJumpCounter);
+                    }
+                    pc = successor;
                     continue bytecode_loop_slow;
                 } else {
-                    pc = jumpNode.getSuccessorIndex();
+                    final int successor = jumpNode.getSuccessorIndex();
+                    if (successor <= pc && ++backJumpCounter >= BACK_JUMPS_BEFORE_LOOP_NODE) {
+                        return continueInLoopNode(frame, successor, backJumpCounter);
+                    }
+                    pc = successor;
                     continue bytecode_loop_slow;
                 }
             } else if (node instanceof UnconditionalJumpNode) {
-                pc = ((UnconditionalJumpNode) node).getJumpSuccessor();
+                final int successor = ((UnconditionalJumpNode) node).getJumpSuccessor();
+                if (successor <= pc && ++backJumpCounter >= BACK_JUMPS_BEFORE_LOOP_NODE) {
+                    return continueInLoopNode(frame, successor, backJumpCounter);
+                }
+                pc = successor;
                 continue bytecode_loop_slow;
             } else if (node instanceof AbstractReturnNode) {
                 returnValue = ((AbstractReturnNode) node).executeReturn(frame);
@@ -315,11 +507,32 @@ public final class ExecuteContextNode extends AbstractExecuteContextNode {
         if (DECODE_BYTECODE_ON_DEMAND && bytecodeNodes[pc] == null) {
             CompilerDirectives.transferToInterpreterAndInvalidate();
             bytecodeNodes[pc] = insert(SqueakBytecodeDecoder.decodeBytecode(code, pc));
+            bytecodeKinds[pc] = kindOf(bytecodeNodes[pc]);
             notifyInserted(bytecodeNodes[pc]);
         }
         return bytecodeNodes[pc];
     }
 
+    private static byte kindOf(final AbstractBytecodeNode node) {
+        if (node == null) {
+            return KIND_UNDECODED;
+        } else if (node instanceof CallPrimitiveNode) {
+            return KIND_CALL_PRIMITIVE;
+        } else if (node instanceof AbstractSendNode) {
+            return KIND_SEND;
+        } else if (node instanceof ConditionalJumpNode) {
+            return KIND_CONDITIONAL_JUMP;
+        } else if (node instanceof UnconditionalJumpNode) {
+            return KIND_UNCONDITIONAL_JUMP;
+        } else if (node instanceof AbstractReturnNode) {
+            return KIND_RETURN;
+        } else if (node instanceof PushClosureNode) {
+            return KIND_PUSH_CLOSURE;
+        } else {
+            return KIND_OTHER;
+        }
+    }
+
     @Override
     public boolean isInstrumentable() {
         return true;
@@ -25,7 +25,12 @@ public abstract class MaterializeContextOnMethodExitNode extends AbstractNode {
 
     public abstract void execute(VirtualFrame frame);
 
-    @Specialization(guards = {"image.lastSeenContext == null", "!getContextNode.hasContext(frame)", "getContextNode.execute(frame).hasEscaped()"}, limit = "1")
+    /*
+     * A context that returned normally is terminated and has no sender anymore, so its escape does
+     * not require its sender to be materialized. This keeps exception-heavy code, where every
+     * signal context escapes into its exception, from materializing the context of each caller.
+     */
+    @Specialization(guards = {"image.lastSeenContext == null", "!getContextNode.hasContext(frame)", "hasEscapedAndNotTerminated(getContextNode.execute(frame))"}, limit = "1")
     protected static final void doStartMaterialization(final VirtualFrame frame,
                     @Shared("getContextNode") @Cached final GetContextNode getContextNode,
                     @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
@@ -55,12 +60,16 @@ public abstract class MaterializeContextOnMethodExitNode extends AbstractNode {
         }
     }
 
-    @Specialization(guards = {"getContextNode.hasContext(frame) || !getContextNode.execute(frame).hasEscaped()"}, limit = "1")
+    @Specialization(guards = {"getContextNode.hasContext(frame) || !hasEscapedAndNotTerminated(getContextNode.execute(frame))"}, limit = "1")
     protected final void doNothing(@SuppressWarnings("unused") final VirtualFrame frame,
                     @SuppressWarnings("unused") @Shared("getContextNode") @Cached final GetContextNode getContextNode) {
         /*
          * Nothing to do because neither was a child context materialized nor has this context been
-         * requested and allocated.
+         * requested and allocated, or because this context has returned and cannot reach its sender.
          */
     }
+
+    protected static final boolean hasEscapedAndNotTerminated(final ContextObject context) {
+        return context.hasEscaped() && !context.isTerminated();
+    }
 }
@@ -73,6 +73,7 @@ public abstract class SqueakObjectChangeClassOfToNode extends AbstractNode {
     @Specialization(guards = {"receiver.hasFormatOf(argument)"})
     protected static final void doPointers(final AbstractPointersObject receiver, final ClassObject argument) {
         receiver.changeClassTo(argument);
+        invalidateInstanceRegistry(receiver, argument);
     }
 
     @Specialization(guards = {"receiver.hasFormatOf(argument)"})
@@ -93,6 +94,7 @@ public abstract class SqueakObjectChangeClassOfToNode extends AbstractNode {
     @Specialization(guards = {"receiver.hasFormatOf(argument)"})
     protected static final void doEmpty(final EmptyObject receiver, final ClassObject argument) {
         receiver.setSqueakClass(argument);
+        invalidateInstanceRegistry(receiver, argument);
     }
 
     @SuppressWarnings("unused")
@@ -100,4 +102,10 @@ public abstract class SqueakObjectChangeClassOfToNode extends AbstractNode {
     protected static final void doFail(final AbstractSqueakObjectWithClassAndHash receiver, final ClassObject argument) {
         throw PrimitiveFailed.GENERIC_ERROR;
     }
+
+    private static void invalidateInstanceRegistry(final AbstractSqueakObjectWithClassAndHash receiver, final ClassObject newClass) {
+        if (receiver.image.instanceRegistry != null) {
+            receiver.image.instanceRegistry.invalidate(newClass);
+        }
+    }
 }
@@ -30,6 +30,7 @@ import de.hpi.swa.trufflesqueak.model.layout.ObjectLayout;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.CONTEXT;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.METACLASS;
 import de.hpi.swa.trufflesqueak.nodes.AbstractNode;
+import de.hpi.swa.trufflesqueak.util.InstanceRegistry;
 
 @GenerateUncached
 public abstract class SqueakObjectNewNode extends AbstractNode {
@@ -50,7 +51,11 @@ public abstract class SqueakObjectNewNode extends AbstractNode {
     public final AbstractSqueakObjectWithHash execute(final SqueakImageContext image, final ClassObject classObject, final int extraSize) {
         CompilerAsserts.partialEvaluationConstant(image);
         image.reportNewAllocationRequest();
-        return image.reportNewAllocationResult(executeAllocation(image, classObject, extraSize));
+        final AbstractSqueakObjectWithHash result = executeAllocation(image, classObject, extraSize);
+        if (image.instanceRegistry != null) {
+            InstanceRegistry.register(result);
+        }
+        return image.reportNewAllocationResult(result);
     }
 
     protected abstract AbstractSqueakObjectWithHash executeAllocation(SqueakImageContext image, ClassObject classObject, int extraSize);
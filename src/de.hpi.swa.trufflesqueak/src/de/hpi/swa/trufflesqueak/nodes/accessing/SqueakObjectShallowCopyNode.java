@@ -10,6 +10,7 @@ import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
 
 import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.AbstractSqueakObjectWithHash;
 import de.hpi.swa.trufflesqueak.model.ArrayObject;
 import de.hpi.swa.trufflesqueak.model.BlockClosureObject;
 import de.hpi.swa.trufflesqueak.model.ClassObject;
@@ -26,13 +27,18 @@ import de.hpi.swa.trufflesqueak.model.WeakVariablePointersObject;
 import de.hpi.swa.trufflesqueak.nodes.AbstractNode;
 import de.hpi.swa.trufflesqueak.nodes.accessing.ArrayObjectNodes.ArrayObjectShallowCopyNode;
 import de.hpi.swa.trufflesqueak.nodes.accessing.NativeObjectNodes.NativeObjectShallowCopyNode;
+import de.hpi.swa.trufflesqueak.util.InstanceRegistry;
 
 public abstract class SqueakObjectShallowCopyNode extends AbstractNode {
 
     public final Object execute(final SqueakImageContext image, final Object object) {
         CompilerAsserts.partialEvaluationConstant(image);
         image.reportNewAllocationRequest();
-        return image.reportNewAllocationResult(executeAllocation(object));
+        final Object copy = executeAllocation(object);
+        if (image.instanceRegistry != null && copy != object && copy instanceof AbstractSqueakObjectWithHash) {
+            InstanceRegistry.register((AbstractSqueakObjectWithHash) copy);
+        }
+        return image.reportNewAllocationResult(copy);
     }
 
     protected abstract Object executeAllocation(Object obj);
@@ -8,6 +8,8 @@ package de.hpi.swa.trufflesqueak.nodes.dispatch;
 import java.util.ArrayList;
 
 import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.CachedContext;
 import com.oracle.truffle.api.dsl.ImportStatic;
@@ -20,11 +22,12 @@ import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.nodes.AbstractNode;
 import de.hpi.swa.trufflesqueak.nodes.bytecodes.SendBytecodes.AbstractSelfSendNode;
-import de.hpi.swa.trufflesqueak.util.MethodCacheEntry;
+import de.hpi.swa.trufflesqueak.util.MegamorphicSendCache;
 
 @ImportStatic(AbstractSelfSendNode.class)
 public abstract class LookupSelectorNode extends AbstractNode {
     protected final NativeObject selector;
+    @CompilationFinal private MegamorphicSendCache megamorphicSendCache;
 
     protected LookupSelectorNode(final NativeObject selector) {
         this.selector = selector;
@@ -68,13 +71,14 @@ public abstract class LookupSelectorNode extends AbstractNode {
         return list.toArray(new Assumption[0]);
     }
 
+    /* Megamorphic send sites share one lookup cache per selector. */
     @Specialization(replaces = "doCached")
-    protected final Object doUncached(final ClassObject receiverClass,
+    protected final Object doMegamorphic(final ClassObject receiverClass,
                     @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
-        final MethodCacheEntry cachedEntry = image.findMethodCacheEntry(receiverClass, selector);
-        if (cachedEntry.getResult() == null) {
-            cachedEntry.setResult(receiverClass.lookupInMethodDictSlow(selector));
+        if (megamorphicSendCache == null) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            megamorphicSendCache = image.getMegamorphicSendCache(selector);
         }
-        return cachedEntry.getResult(); /* `null` return signals a doesNotUnderstand. */
+        return megamorphicSendCache.lookup(receiverClass, selector); /* `null` return signals a doesNotUnderstand. */
     }
 }
@@ -17,7 +17,9 @@ import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
@@ -67,6 +69,57 @@ public final class FilePlugin extends AbstractPrimitiveFactoryHolder {
         public static final byte ERROR = 2;
     }
 
+    /**
+     * Entries of the directories enumerated recently by primitiveDirectoryLookup. The image
+     * enumerates a directory by looking up its entries with increasing indices, so a listing is read
+     * once when an enumeration starts at index 1 and reused for the following indices. Listings are
+     * kept by path, so that enumerations of several directories can be interleaved, and are read
+     * again if they have not been used for a while.
+     */
+    public static final class DirectoryListing {
+        private static final long TIMEOUT_MILLIS = 5_000;
+        private static final int MAX_LISTINGS = 8;
+
+        private final LinkedHashMap<String, Listing> listings = new LinkedHashMap<String, Listing>(MAX_LISTINGS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Listing> eldest) {
+                return size() > MAX_LISTINGS;
+            }
+        };
+
+        private static final class Listing {
+            private final TruffleFile[] entries;
+            private long lastAccess;
+
+            private Listing(final TruffleFile[] entries) {
+                this.entries = entries;
+            }
+        }
+
+        private synchronized TruffleFile[] getEntries(final String path, final TruffleFile directory, final long index) throws IOException {
+            final long now = System.currentTimeMillis();
+            Listing listing = listings.get(path);
+            if (index == 1 || listing == null || now - listing.lastAccess > TIMEOUT_MILLIS) {
+                if (!directory.isDirectory()) {
+                    listings.remove(path);
+                    throw PrimitiveFailed.GENERIC_ERROR;
+                }
+                final ArrayList<TruffleFile> files = new ArrayList<>();
+                try (DirectoryStream<TruffleFile> stream = directory.newDirectoryStream()) {
+                    for (final TruffleFile file : stream) {
+                        files.add(file);
+                    }
+                }
+                listing = new Listing(files.toArray(new TruffleFile[0]));
+                listings.put(path, listing);
+            }
+            listing.lastAccess = now;
+            return listing.entries;
+        }
+    }
+
     @Override
     public List<? extends NodeFactory<? extends AbstractPrimitiveNode>> getFactories() {
         return FilePluginFactory.getFactories();
@@ -264,21 +317,19 @@ public final class FilePlugin extends AbstractPrimitiveFactoryHolder {
             if (OSDetector.SINGLETON.isWindows() && !pathName.endsWith("\\")) {
                 pathName += "\\"; // new File("C:") will fail, we need to add a trailing backslash.
             }
-            final TruffleFile directory = asPublicTruffleFile(image, pathName);
-            if (!directory.isDirectory()) {
-                throw PrimitiveFailed.GENERIC_ERROR;
-            }
-            long count = index;
-            try (DirectoryStream<TruffleFile> stream = directory.newDirectoryStream()) {
-                for (final TruffleFile file : stream) {
-                    if (count-- <= 1 && file.exists()) {
-                        return newFileEntry(image, file);
-                    }
-                }
+            final TruffleFile[] entries;
+            try {
+                entries = image.directoryListing.getEntries(pathName, asPublicTruffleFile(image, pathName), index);
             } catch (final IOException e) {
                 log("Failed to access directory", e);
                 throw PrimitiveFailed.GENERIC_ERROR;
             }
+            for (long i = index - 1; i < entries.length; i++) {
+                final TruffleFile file = entries[(int) i];
+                if (file.exists()) {
+                    return newFileEntry(image, file);
+                }
+            }
             return NilObject.SINGLETON;
         }
 
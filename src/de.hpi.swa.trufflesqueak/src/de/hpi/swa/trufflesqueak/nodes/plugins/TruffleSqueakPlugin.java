@@ -10,6 +10,7 @@ import java.util.List;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.Cached.Shared;
 import com.oracle.truffle.api.dsl.CachedContext;
 import com.oracle.truffle.api.dsl.GenerateNodeFactory;
 import com.oracle.truffle.api.dsl.ImportStatic;
@@ -20,15 +21,22 @@ import de.hpi.swa.trufflesqueak.SqueakLanguage;
 import de.hpi.swa.trufflesqueak.exceptions.PrimitiveExceptions.PrimitiveFailed;
 import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
 import de.hpi.swa.trufflesqueak.interop.JavaObjectWrapper;
+import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
+import de.hpi.swa.trufflesqueak.model.AbstractSqueakObject;
+import de.hpi.swa.trufflesqueak.model.ArrayObject;
 import de.hpi.swa.trufflesqueak.model.CompiledCodeObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
+import de.hpi.swa.trufflesqueak.model.NilObject;
 import de.hpi.swa.trufflesqueak.model.PointersObject;
+import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.ASSOCIATION;
 import de.hpi.swa.trufflesqueak.model.layout.ObjectLayouts.FORM;
 import de.hpi.swa.trufflesqueak.nodes.accessing.AbstractPointersObjectNodes.AbstractPointersObjectReadNode;
+import de.hpi.swa.trufflesqueak.nodes.accessing.SqueakObjectIdentityNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.AbstractPrimitiveFactoryHolder;
 import de.hpi.swa.trufflesqueak.nodes.primitives.AbstractPrimitiveNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.BinaryPrimitive;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.BinaryPrimitiveWithoutFallback;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.QuaternaryPrimitive;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.UnaryPrimitiveWithoutFallback;
 import de.hpi.swa.trufflesqueak.nodes.primitives.SqueakPrimitive;
 import de.hpi.swa.trufflesqueak.util.MiscUtils;
@@ -82,6 +90,196 @@ public final class TruffleSqueakPlugin extends AbstractPrimitiveFactoryHolder {
         }
     }
 
+    @GenerateNodeFactory
+    @SqueakPrimitive(names = "primitiveLookupSymbol")
+    protected abstract static class PrimLookupSymbolNode extends AbstractPrimitiveNode implements BinaryPrimitive {
+        /* Fails if the VM does not know the symbol, so that the image falls back to its own table. */
+        @Specialization(guards = "string.isByteType()")
+        protected static final NativeObject doLookup(@SuppressWarnings("unused") final Object receiver, final NativeObject string,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            final NativeObject symbol = image.symbolTable.lookup(string.getByteStorage());
+            if (symbol == null) {
+                throw PrimitiveFailed.GENERIC_ERROR;
+            }
+            return symbol;
+        }
+    }
+
+    @GenerateNodeFactory
+    @SqueakPrimitive(names = "primitiveRegisterSymbol")
+    protected abstract static class PrimRegisterSymbolNode extends AbstractPrimitiveNode implements BinaryPrimitive {
+        @Specialization(guards = "symbol.isByteType()")
+        protected static final Object doRegister(final Object receiver, final NativeObject symbol,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            if (symbol.getSqueakClass() != image.getByteSymbolClass()) {
+                throw PrimitiveFailed.BAD_ARGUMENT;
+            }
+            image.symbolTable.register(symbol);
+            return receiver;
+        }
+    }
+
+    /**
+     * Probe loop of IdentitySet>>scanFor: on the storage of the set's array. The image computes the
+     * one-based start index from the scaled identity hash of the key, so that the primitive agrees
+     * with the image on where keys live. Answers the index of the element identical to the key or of
+     * the first empty slot. Fails if the array is full, if the key is nil (which the image wraps in a
+     * set element), or if the array uses a storage strategy not handled here.
+     */
+    @GenerateNodeFactory
+    @ImportStatic(ArrayObject.class)
+    @SqueakPrimitive(names = "primitiveIdentityScanFor")
+    protected abstract static class PrimIdentityScanForNode extends AbstractPrimitiveNode implements QuaternaryPrimitive {
+        @SuppressWarnings("unused")
+        @Specialization(guards = {"array.isEmptyType()", "!isNil(key)"})
+        protected static final long doEmpty(final Object receiver, final ArrayObject array, final Object key, final long start) {
+            return checkStart(start, array.getEmptyLength());
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = {"array.isLongType()", "!isLongNilTag(key)"})
+        protected static final long doLongs(final Object receiver, final ArrayObject array, final long key, final long start) {
+            final long[] longs = array.getLongStorage();
+            final int length = longs.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final long element = longs[i];
+                if (element == key || element == ArrayObject.LONG_NIL_TAG) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = "array.isObjectType()")
+        protected static final long doObjectsLong(final Object receiver, final ArrayObject array, final long key, final long start) {
+            final Object[] objects = array.getObjectStorage();
+            final int length = objects.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final Object element = objects[i];
+                if (element == NilObject.SINGLETON || element instanceof Long && (long) element == key) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = {"array.isObjectType()", "!isNil(key)"})
+        protected static final long doObjects(final Object receiver, final ArrayObject array, final AbstractSqueakObject key, final long start) {
+            final Object[] objects = array.getObjectStorage();
+            final int length = objects.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final Object element = objects[i];
+                if (element == key || element == NilObject.SINGLETON) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = {"array.isObjectType()", "!isLong(key)", "!isAbstractSqueakObject(key)"})
+        protected static final long doObjectsImmediate(final Object receiver, final ArrayObject array, final Object key, final long start,
+                        @Cached final SqueakObjectIdentityNode identityNode) {
+            final Object[] objects = array.getObjectStorage();
+            final int length = objects.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final Object element = objects[i];
+                if (element == NilObject.SINGLETON || identityNode.execute(element, key)) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+    }
+
+    /**
+     * Probe loop of IdentityDictionary>>scanFor:, comparing the keys of the associations in the
+     * dictionary's array. Like {@link PrimIdentityScanForNode}, the image computes the start index.
+     * Fails if the array is full, if it contains anything but associations, or if it uses a storage
+     * strategy not handled here.
+     */
+    @GenerateNodeFactory
+    @SqueakPrimitive(names = "primitiveIdentityScanForKey")
+    protected abstract static class PrimIdentityScanForKeyNode extends AbstractPrimitiveNode implements QuaternaryPrimitive {
+        @SuppressWarnings("unused")
+        @Specialization(guards = "array.isEmptyType()")
+        protected static final long doEmpty(final Object receiver, final ArrayObject array, final Object key, final long start) {
+            return checkStart(start, array.getEmptyLength());
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = "array.isObjectType()")
+        protected static final long doLong(final Object receiver, final ArrayObject array, final long key, final long start,
+                        @Shared("readNode") @Cached final AbstractPointersObjectReadNode readNode) {
+            final Object[] objects = array.getObjectStorage();
+            final int length = objects.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final Object element = objects[i];
+                if (element == NilObject.SINGLETON) {
+                    return i + 1;
+                }
+                final Object elementKey = readKey(readNode, element);
+                if (elementKey instanceof Long && (long) elementKey == key) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = "array.isObjectType()")
+        protected static final long doObject(final Object receiver, final ArrayObject array, final AbstractSqueakObject key, final long start,
+                        @Shared("readNode") @Cached final AbstractPointersObjectReadNode readNode) {
+            final Object[] objects = array.getObjectStorage();
+            final int length = objects.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final Object element = objects[i];
+                if (element == NilObject.SINGLETON || readKey(readNode, element) == key) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+
+        @SuppressWarnings("unused")
+        @Specialization(guards = {"array.isObjectType()", "!isLong(key)", "!isAbstractSqueakObject(key)"})
+        protected static final long doImmediate(final Object receiver, final ArrayObject array, final Object key, final long start,
+                        @Shared("readNode") @Cached final AbstractPointersObjectReadNode readNode,
+                        @Cached final SqueakObjectIdentityNode identityNode) {
+            final Object[] objects = array.getObjectStorage();
+            final int length = objects.length;
+            for (int i = checkStart(start, length) - 1, probes = 0; probes < length; i = next(i, length), probes++) {
+                final Object element = objects[i];
+                if (element == NilObject.SINGLETON || identityNode.execute(readKey(readNode, element), key)) {
+                    return i + 1;
+                }
+            }
+            throw PrimitiveFailed.GENERIC_ERROR;
+        }
+
+        private static Object readKey(final AbstractPointersObjectReadNode readNode, final Object association) {
+            if (association instanceof AbstractPointersObject) {
+                return readNode.execute((AbstractPointersObject) association, ASSOCIATION.KEY);
+            } else {
+                throw PrimitiveFailed.BAD_ARGUMENT;
+            }
+        }
+    }
+
+    private static int checkStart(final long start, final int length) {
+        if (1 <= start && start <= length) {
+            return (int) start;
+        } else {
+            throw PrimitiveFailed.BAD_INDEX;
+        }
+    }
+
+    private static int next(final int index, final int length) {
+        return index + 1 == length ? 0 : index + 1;
+    }
+
     @GenerateNodeFactory
     @ImportStatic(FORM.class)
     @SqueakPrimitive(names = "primitiveFormToBufferedImage")
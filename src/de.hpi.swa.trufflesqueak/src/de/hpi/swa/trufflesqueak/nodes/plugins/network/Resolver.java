@@ -5,15 +5,37 @@
  */
 package de.hpi.swa.trufflesqueak.nodes.plugins.network;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
-final class Resolver {
+import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.util.LogUtils;
 
-    enum Status {
+/**
+ * Name and address lookups of the SocketPlugin. Lookups that cannot be answered right away run on
+ * a background thread while the resolver is busy, and signal the resolver semaphore of the image
+ * when they complete (see NetNameResolver class>>#waitForCompletionUntil:). Host names and
+ * addresses listed in the hosts file given by the `resolver-hosts-file` option are resolved
+ * without querying DNS, and resolved lookups are cached for a limited time.
+ */
+public final class Resolver {
+
+    public enum Status {
         Uninitialized(0),
         Ready(1),
         Busy(2),
@@ -25,18 +47,67 @@ final class Resolver {
             this.id = id;
         }
 
-        long id() {
+        public long id() {
             return id;
         }
     }
 
+    private static final long CACHE_TTL_MILLIS = 30_000;
+    private static final int CACHE_SIZE = 256;
+    private static final int MAX_LOOKUP_THREADS = 4;
+    private static final long LOOKUP_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final String NAME_KEY_PREFIX = "name:";
+    private static final String ADDRESS_KEY_PREFIX = "address:";
+
     private static InetAddress anyLocalAddress;
     private static InetAddress loopbackAddress;
 
-    private static byte[] lastNameLookup;
-    private static String lastAddressLookup;
+    private final SqueakImageContext image;
+    /* `null` if given by the `resolver-hosts-file` option. */
+    private final String hostsFile;
+    private final int cacheSize;
+    private final long cacheTtlMillis;
+    /* `null` if lookups run on a thread pool of this resolver. */
+    private final Executor executor;
+    private ThreadPoolExecutor lookupThreads;
+    private int semaphoreIndex;
+    /* Identifies the current lookup, so that aborted lookups do not publish their results. */
+    private final AtomicInteger lookupId = new AtomicInteger();
+    private volatile Status status = Status.Ready;
+    private volatile byte[] lastNameLookup;
+    private volatile String lastAddressLookup;
+    /* Host names by address and addresses by host name from the hosts file, `null` until used. */
+    private Map<String, Object> hosts;
+    private final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CacheEntry> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private static final class CacheEntry {
+        private final Object value;
+        private final long expiresAt;
+
+        private CacheEntry(final Object value, final long ttlMillis) {
+            this.value = value;
+            expiresAt = System.currentTimeMillis() + ttlMillis;
+        }
+    }
 
-    private Resolver() {
+    public Resolver(final SqueakImageContext image) {
+        this(image, null, CACHE_SIZE, CACHE_TTL_MILLIS, null);
+    }
+
+    /* Allows tests to provide the hosts file, the cache limits, and where lookups run. */
+    public Resolver(final SqueakImageContext image, final String hostsFile, final int cacheSize, final long cacheTtlMillis, final Executor executor) {
+        this.image = image;
+        this.hostsFile = hostsFile;
+        this.cacheSize = cacheSize;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.executor = executor;
     }
 
     protected static byte[] getAnyLocalAddress() {
@@ -54,40 +125,75 @@ final class Resolver {
         return loopbackAddress.getAddress();
     }
 
-    @TruffleBoundary
-    protected static void startHostNameLookUp(final String hostName) throws UnknownHostException {
-        try {
-            if ("localhost".equals(hostName)) {
-                lastNameLookup = Resolver.getLoopbackAddress();
-                return;
-            }
+    public void setSemaphoreIndex(final int index) {
+        semaphoreIndex = index;
+    }
 
-            final InetAddress address = InetAddress.getByName(hostName);
-            lastNameLookup = address.getAddress();
-        } catch (final UnknownHostException e) {
-            lastNameLookup = null;
-            throw e;
+    public Status getStatus() {
+        return status;
+    }
+
+    @TruffleBoundary
+    public void startHostNameLookUp(final String hostName) {
+        final int id = lookupId.incrementAndGet();
+        lastNameLookup = null;
+        final Object known = "localhost".equals(hostName) ? getLoopbackAddress() : lookupHostsOrCache(NAME_KEY_PREFIX + hostName);
+        if (known != null) {
+            lastNameLookup = (byte[]) known;
+            status = Status.Ready;
+            return;
         }
+        status = Status.Busy;
+        submit(() -> {
+            try {
+                final byte[] address = InetAddress.getByName(hostName).getAddress();
+                cache(NAME_KEY_PREFIX + hostName, address);
+                complete(id, () -> lastNameLookup = address, Status.Ready);
+            } catch (final UnknownHostException e) {
+                LogUtils.SOCKET.log(Level.FINE, "Host name lookup failed", e);
+                complete(id, () -> lastNameLookup = null, Status.Error);
+            }
+        });
     }
 
-    protected static byte[] lastHostNameLookupResult() {
+    public byte[] lastHostNameLookupResult() {
         return lastNameLookup;
     }
 
     @TruffleBoundary
-    protected static void startAddressLookUp(final byte[] address) throws UnknownHostException {
-        try {
-            lastAddressLookup = InetAddress.getByAddress(address).getHostName();
-        } catch (final UnknownHostException e) {
-            lastAddressLookup = null;
-            throw e;
+    public void startAddressLookUp(final byte[] address) {
+        final int id = lookupId.incrementAndGet();
+        lastAddressLookup = null;
+        final String key = ADDRESS_KEY_PREFIX + addressBytesToString(address);
+        final Object known = lookupHostsOrCache(key);
+        if (known != null) {
+            lastAddressLookup = (String) known;
+            status = Status.Ready;
+            return;
         }
+        status = Status.Busy;
+        submit(() -> {
+            try {
+                final String hostName = InetAddress.getByAddress(address).getHostName();
+                cache(key, hostName);
+                complete(id, () -> lastAddressLookup = hostName, Status.Ready);
+            } catch (final UnknownHostException e) {
+                LogUtils.SOCKET.log(Level.FINE, "Address lookup failed", e);
+                complete(id, () -> lastAddressLookup = null, Status.Error);
+            }
+        });
     }
 
-    protected static String lastAddressLookUpResult() {
+    public String lastAddressLookUpResult() {
         return lastAddressLookup;
     }
 
+    @TruffleBoundary
+    public void abortLookup() {
+        lookupId.incrementAndGet();
+        status = Status.Ready;
+    }
+
     @TruffleBoundary
     protected static String addressBytesToString(final byte[] address) {
         try {
@@ -96,4 +202,130 @@ final class Resolver {
             return null;
         }
     }
+
+    private synchronized Object lookupHostsOrCache(final String key) {
+        final Object host = getHosts().get(key);
+        if (host != null) {
+            return host;
+        }
+        final CacheEntry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        } else if (entry.expiresAt < System.currentTimeMillis()) {
+            cache.remove(key);
+            return null;
+        } else {
+            return entry.value;
+        }
+    }
+
+    private synchronized void cache(final String key, final Object value) {
+        cache.put(key, new CacheEntry(value, cacheTtlMillis));
+    }
+
+    private void complete(final int id, final Runnable setResult, final Status newStatus) {
+        synchronized (this) {
+            if (lookupId.get() != id) {
+                return; // Aborted or superseded by another lookup.
+            }
+            setResult.run();
+            status = newStatus;
+        }
+        if (semaphoreIndex > 0) {
+            image.interrupt.signalSemaphoreWithIndex(semaphoreIndex);
+        }
+    }
+
+    private Map<String, Object> getHosts() {
+        if (hosts == null) {
+            hosts = new HashMap<>();
+            final String path = hostsFile != null ? hostsFile : image.options.resolverHostsFile;
+            if (!path.isEmpty()) {
+                try (BufferedReader reader = image.env.getPublicTruffleFile(path).newBufferedReader(StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        addHostsLine(line);
+                    }
+                } catch (final IOException | SecurityException e) {
+                    image.printToStdErr("Failed to read hosts file", path, e);
+                }
+            }
+        }
+        return hosts;
+    }
+
+    /* Parses a line of the form `address name [alias...] [# comment]`, skips malformed lines. */
+    private void addHostsLine(final String line) {
+        final int commentStart = line.indexOf('#');
+        final String[] fields = (commentStart < 0 ? line : line.substring(0, commentStart)).trim().split("\\s+");
+        if (fields.length < 2) {
+            return;
+        }
+        final InetAddress address = parseAddressLiteral(fields[0]);
+        if (address == null) {
+            LogUtils.SOCKET.fine(() -> "Skipping malformed hosts file line: " + line);
+            return;
+        }
+        hosts.putIfAbsent(ADDRESS_KEY_PREFIX + address.getHostAddress(), fields[1]);
+        for (int i = 1; i < fields.length; i++) {
+            hosts.putIfAbsent(NAME_KEY_PREFIX + fields[i], address.getAddress());
+        }
+    }
+
+    /*
+     * Returns `null` unless literal is an IPv4 address in dotted-decimal notation or an IPv6
+     * address. InetAddress.getByName would query DNS for anything else.
+     */
+    private static InetAddress parseAddressLiteral(final String literal) {
+        try {
+            if (literal.indexOf(':') >= 0) {
+                /* Brackets make InetAddress reject anything but IPv6 literals. */
+                return InetAddress.getByName('[' + literal + ']');
+            }
+            final String[] parts = literal.split("\\.", -1);
+            if (parts.length != 4) {
+                return null;
+            }
+            final byte[] bytes = new byte[4];
+            for (int i = 0; i < bytes.length; i++) {
+                if (parts[i].isEmpty() || parts[i].length() > 3 || !parts[i].chars().allMatch(Character::isDigit)) {
+                    return null;
+                }
+                final int value = Integer.parseInt(parts[i]);
+                if (value > 255) {
+                    return null;
+                }
+                bytes[i] = (byte) value;
+            }
+            return InetAddress.getByAddress(bytes);
+        } catch (final UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private synchronized void submit(final Runnable lookup) {
+        if (executor != null) {
+            executor.execute(lookup);
+            return;
+        }
+        if (lookupThreads == null) {
+            lookupThreads = new ThreadPoolExecutor(MAX_LOOKUP_THREADS, MAX_LOOKUP_THREADS, LOOKUP_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, "TruffleSqueak resolver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            lookupThreads.allowCoreThreadTimeOut(true);
+        }
+        lookupThreads.execute(lookup);
+    }
+
+    /** Stops all pending lookups, called when the context is disposed. */
+    @TruffleBoundary
+    public synchronized void shutdown() {
+        lookupId.incrementAndGet();
+        if (lookupThreads != null) {
+            lookupThreads.shutdownNow();
+            lookupThreads = null;
+        }
+    }
 }
@@ -31,9 +31,11 @@ import de.hpi.swa.trufflesqueak.model.BooleanObject;
 import de.hpi.swa.trufflesqueak.model.NativeObject;
 import de.hpi.swa.trufflesqueak.model.NilObject;
 import de.hpi.swa.trufflesqueak.model.PointersObject;
+import de.hpi.swa.trufflesqueak.nodes.accessing.ArrayObjectNodes.ArrayObjectToObjectArrayCopyNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.AbstractPrimitiveFactoryHolder;
 import de.hpi.swa.trufflesqueak.nodes.primitives.AbstractPrimitiveNode;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.BinaryPrimitive;
+import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.BinaryPrimitiveWithoutFallback;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.QuaternaryPrimitive;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.QuinaryPrimitive;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.SenaryPrimitive;
@@ -60,17 +62,38 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
     @SqueakPrimitive(names = "primitiveResolverStatus")
     protected abstract static class PrimResolverStatusNode extends AbstractPrimitiveNode implements UnaryPrimitiveWithoutFallback {
         @Specialization
-        protected static long doWork(@SuppressWarnings("unused") final Object receiver) {
-            return Resolver.Status.Ready.id();
+        protected static long doWork(@SuppressWarnings("unused") final Object receiver,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            return image.resolver.getStatus().id();
+        }
+    }
+
+    @GenerateNodeFactory
+    @SqueakPrimitive(names = "primitiveResolverAbortLookup")
+    protected abstract static class PrimResolverAbortLookupNode extends AbstractPrimitiveNode implements UnaryPrimitiveWithoutFallback {
+        /** Abort the current lookup, its results are discarded once it completes. */
+        @Specialization
+        protected static Object doWork(final Object receiver,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            image.resolver.abortLookup();
+            return receiver;
         }
     }
 
     @GenerateNodeFactory
     @NodeInfo(cost = NodeCost.NONE)
     @SqueakPrimitive(names = "primitiveInitializeNetwork")
-    protected abstract static class PrimInitializeNetworkNode extends AbstractPrimitiveNode implements UnaryPrimitiveWithoutFallback {
+    protected abstract static class PrimInitializeNetworkNode extends AbstractPrimitiveNode implements BinaryPrimitiveWithoutFallback {
         @Specialization
-        protected static Object doWork(final Object receiver) {
+        protected static Object doWork(final Object receiver, @SuppressWarnings("unused") final NotProvided resolverSemaphoreIndex) {
+            return receiver;
+        }
+
+        /** The resolver semaphore is signaled whenever a lookup completes. */
+        @Specialization
+        protected static Object doWork(final Object receiver, final long resolverSemaphoreIndex,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            image.resolver.setSemaphoreIndex((int) resolverSemaphoreIndex);
             return receiver;
         }
     }
@@ -84,6 +107,22 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
         }
     }
 
+    private static SqueakSocket getSocketOrBadArgument(final Object socketHandle) {
+        if (socketHandle instanceof PointersObject && ((PointersObject) socketHandle).getHiddenObject() instanceof SqueakSocket) {
+            return (SqueakSocket) ((PointersObject) socketHandle).getHiddenObject();
+        } else {
+            throw PrimitiveFailed.BAD_ARGUMENT;
+        }
+    }
+
+    private static byte[] getBytesOrBadArgument(final Object buffer) {
+        if (buffer instanceof NativeObject && ((NativeObject) buffer).isByteType()) {
+            return ((NativeObject) buffer).getByteStorage();
+        } else {
+            throw PrimitiveFailed.BAD_ARGUMENT;
+        }
+    }
+
     @GenerateNodeFactory
     @SqueakPrimitive(names = "primitiveResolverStartNameLookup")
     protected abstract static class PrimResolverStartNameLookupNode extends AbstractPrimitiveNode implements BinaryPrimitive {
@@ -93,13 +132,10 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
          * primNameLookupResult.
          */
         @Specialization(guards = "hostName.isByteType()")
-        protected static final Object doWork(final Object receiver, final NativeObject hostName) {
-            try {
-                LogUtils.SOCKET.finer(() -> "Starting lookup for host name " + hostName);
-                Resolver.startHostNameLookUp(hostName.asStringUnsafe());
-            } catch (final UnknownHostException e) {
-                LogUtils.SOCKET.log(Level.FINE, "Host name lookup failed", e);
-            }
+        protected static final Object doWork(final Object receiver, final NativeObject hostName,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            LogUtils.SOCKET.finer(() -> "Starting lookup for host name " + hostName);
+            image.resolver.startHostNameLookUp(hostName.asStringUnsafe());
             return receiver;
         }
     }
@@ -114,13 +150,10 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
          * primAddressLookupResult.
          */
         @Specialization(guards = "address.isByteType()")
-        protected static final Object doWork(final Object receiver, final NativeObject address) {
-            try {
-                LogUtils.SOCKET.finer(() -> "Starting lookup for address " + address);
-                Resolver.startAddressLookUp(address.getByteStorage());
-            } catch (final UnknownHostException e) {
-                LogUtils.SOCKET.log(Level.FINE, "Address lookup failed", e);
-            }
+        protected static final Object doWork(final Object receiver, final NativeObject address,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            LogUtils.SOCKET.finer(() -> "Starting lookup for address " + address);
+            image.resolver.startAddressLookUp(address.getByteStorage().clone());
             return receiver;
         }
     }
@@ -137,7 +170,7 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
         protected static final AbstractSqueakObject doWork(@SuppressWarnings("unused") final Object receiver,
                         @Cached final ConditionProfile hasResultProfile,
                         @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
-            final byte[] lastNameLookup = Resolver.lastHostNameLookupResult();
+            final byte[] lastNameLookup = image.resolver.lastHostNameLookupResult();
             LogUtils.SOCKET.finer(() -> "Name Lookup Result: " + Resolver.addressBytesToString(lastNameLookup));
             return hasResultProfile.profile(lastNameLookup == null) ? NilObject.SINGLETON : image.asByteArray(lastNameLookup);
         }
@@ -153,7 +186,7 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
         @Specialization
         protected static final AbstractSqueakObject doWork(@SuppressWarnings("unused") final Object receiver,
                         @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
-            final String lastAddressLookup = Resolver.lastAddressLookUpResult();
+            final String lastAddressLookup = image.resolver.lastAddressLookUpResult();
             LogUtils.SOCKET.finer(() -> ">> Address Lookup Result: " + lastAddressLookup);
             return lastAddressLookup == null ? NilObject.SINGLETON : image.asByteString(lastAddressLookup);
         }
@@ -508,6 +541,103 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
         }
     }
 
+    @GenerateNodeFactory
+    @SqueakPrimitive(names = "primitiveSocketReceiveDataMany")
+    protected abstract static class PrimSocketReceiveDataManyNode extends AbstractPrimitiveNode implements TernaryPrimitive {
+        /**
+         * Receive data from each socket of the given array into the byte array at the same index of
+         * the second array, starting at its first byte. Sockets without available data are skipped.
+         * Return an array with the number of bytes read per socket, or -1 where receiving failed.
+         */
+        @Specialization
+        protected static final ArrayObject doReceive(@SuppressWarnings("unused") final Object receiver, final ArrayObject sockets, final ArrayObject buffers,
+                        @Cached final ArrayObjectToObjectArrayCopyNode toObjectArrayNode,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            return image.asArrayOfLongs(receiveAll(toObjectArrayNode.execute(sockets), toObjectArrayNode.execute(buffers)));
+        }
+
+        @TruffleBoundary
+        private static long[] receiveAll(final Object[] sockets, final Object[] buffers) {
+            if (sockets.length != buffers.length) {
+                throw PrimitiveFailed.BAD_ARGUMENT;
+            }
+            /* Validate all arguments first, so that a failing primitive has not received any data. */
+            final SqueakSocket[] validSockets = new SqueakSocket[sockets.length];
+            final byte[][] validBuffers = new byte[sockets.length][];
+            for (int i = 0; i < sockets.length; i++) {
+                validSockets[i] = getSocketOrBadArgument(sockets[i]);
+                validBuffers[i] = getBytesOrBadArgument(buffers[i]);
+            }
+            final long[] counts = new long[sockets.length];
+            for (int i = 0; i < sockets.length; i++) {
+                final SqueakSocket socket = validSockets[i];
+                try {
+                    if (socket.isDataAvailable()) {
+                        counts[i] = socket.receiveData(validBuffers[i], 0, validBuffers[i].length);
+                    }
+                } catch (final IOException e) {
+                    LogUtils.SOCKET.log(Level.FINE, "Receiving data failed", e);
+                    counts[i] = -1L;
+                }
+            }
+            return counts;
+        }
+    }
+
+    @GenerateNodeFactory
+    @SqueakPrimitive(names = "primitiveSocketSendDataMany")
+    protected abstract static class PrimSocketSendDataManyNode extends AbstractPrimitiveNode implements QuaternaryPrimitive {
+        /**
+         * Send the data of each byte array of the second array, from the start index at the same
+         * index of the third array to its end, through the socket at the same index of the first
+         * array. Sockets that are still busy sending are skipped. Return an array with the number
+         * of bytes sent per socket, or -1 where sending failed.
+         */
+        @Specialization
+        protected static final ArrayObject doSend(@SuppressWarnings("unused") final Object receiver, final ArrayObject sockets, final ArrayObject buffers, final ArrayObject startIndices,
+                        @Cached final ArrayObjectToObjectArrayCopyNode toObjectArrayNode,
+                        @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
+            return image.asArrayOfLongs(sendAll(toObjectArrayNode.execute(sockets), toObjectArrayNode.execute(buffers), toObjectArrayNode.execute(startIndices)));
+        }
+
+        @TruffleBoundary
+        private static long[] sendAll(final Object[] sockets, final Object[] buffers, final Object[] startIndices) {
+            if (sockets.length != buffers.length || sockets.length != startIndices.length) {
+                throw PrimitiveFailed.BAD_ARGUMENT;
+            }
+            /* Validate all arguments first, so that a failing primitive has not sent any data. */
+            final SqueakSocket[] validSockets = new SqueakSocket[sockets.length];
+            final byte[][] validBuffers = new byte[sockets.length][];
+            final int[] starts = new int[sockets.length];
+            for (int i = 0; i < sockets.length; i++) {
+                validSockets[i] = getSocketOrBadArgument(sockets[i]);
+                validBuffers[i] = getBytesOrBadArgument(buffers[i]);
+                if (!(startIndices[i] instanceof Long)) {
+                    throw PrimitiveFailed.BAD_ARGUMENT;
+                }
+                final long startIndex = (long) startIndices[i];
+                if (startIndex < 1 || startIndex > validBuffers[i].length + 1) {
+                    throw PrimitiveFailed.BAD_INDEX;
+                }
+                starts[i] = (int) startIndex - 1;
+            }
+            final long[] counts = new long[sockets.length];
+            for (int i = 0; i < sockets.length; i++) {
+                final SqueakSocket socket = validSockets[i];
+                final int count = validBuffers[i].length - starts[i];
+                try {
+                    if (count > 0 && socket.isSendDone()) {
+                        counts[i] = socket.sendData(validBuffers[i], starts[i], count);
+                    }
+                } catch (final IOException e) {
+                    LogUtils.SOCKET.log(Level.FINE, "Sending data failed", e);
+                    counts[i] = -1L;
+                }
+            }
+            return counts;
+        }
+    }
+
     @GenerateNodeFactory
     @SqueakPrimitive(names = "primitiveSocketDestroy")
     protected abstract static class PrimSocketDestroyNode extends AbstractPrimitiveNode implements BinaryPrimitive {
@@ -541,10 +671,10 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
             final SqueakSocket socket;
             try {
                 if (socketTypeProfile.profile(socketType == 1)) {
-                    socket = new SqueakUDPSocket();
+                    socket = new SqueakUDPSocket(image.interrupt, image.socketReactor, (int) semaphoreIndex, (int) aReadSemaphore, (int) aWriteSemaphore);
                 } else {
                     assert socketType == 0;
-                    socket = new SqueakTCPSocket();
+                    socket = new SqueakTCPSocket(image.interrupt, image.socketReactor, (int) semaphoreIndex, (int) aReadSemaphore, (int) aWriteSemaphore);
                 }
             } catch (final IOException e) {
                 throw PrimitiveFailed.andTransferToInterpreter();
@@ -567,7 +697,7 @@ public final class SocketPlugin extends AbstractPrimitiveFactoryHolder {
                         final long writeSemaphoreIndex,
                         @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
             try {
-                return PointersObject.newHandleWithHiddenObject(image, getSocketOrPrimFail(sd).accept());
+                return PointersObject.newHandleWithHiddenObject(image, getSocketOrPrimFail(sd).accept((int) semaphoreIndex, (int) readSemaphoreIndex, (int) writeSemaphoreIndex));
             } catch (final IOException e) {
                 LogUtils.SOCKET.log(Level.FINE, "Accepting socket failed", e);
                 throw PrimitiveFailed.andTransferToInterpreter();
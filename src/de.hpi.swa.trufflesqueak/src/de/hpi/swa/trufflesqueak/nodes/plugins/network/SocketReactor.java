@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.nodes.plugins.network;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+import de.hpi.swa.trufflesqueak.util.LogUtils;
+
+/**
+ * Single I/O thread that multiplexes the channels of all sockets of an image with one selector.
+ * Interest in an operation is one-shot: once a channel is ready for it, the interest is removed,
+ * the socket records the readiness and signals its semaphore, and the socket re-arms the interest
+ * after it has consumed the readiness (e.g. after reading). Thus, idle sockets cost nothing and
+ * Smalltalk processes wait on their semaphores instead of polling the socket status. Selection keys
+ * are only ever changed on the reactor thread, all other threads queue their changes. The thread is
+ * started with the first socket and stopped when the context is disposed.
+ */
+public final class SocketReactor implements Runnable {
+    private final ConcurrentLinkedQueue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean isShutdown;
+
+    /* Starts the reactor thread unless it is running already. */
+    @TruffleBoundary
+    public synchronized void start() throws IOException {
+        ensureRunning();
+        if (selector == null) {
+            selector = Selector.open();
+            thread = new Thread(this, "TruffleSqueak socket reactor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    /* Readiness is no longer reported once the reactor is shut down. */
+    void ensureRunning() throws IOException {
+        if (isShutdown) {
+            throw new IOException("Socket reactor has been shut down");
+        }
+    }
+
+    /** Stops the reactor thread and closes its selector, called when the context is disposed. */
+    @TruffleBoundary
+    public synchronized void shutdown() {
+        isShutdown = true;
+        if (selector == null) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @TruffleBoundary
+    void register(final SelectableChannel channel, final SqueakSocket socket, final int interestOps) {
+        submit(() -> {
+            try {
+                channel.register(selector, interestOps, socket);
+            } catch (final ClosedChannelException e) {
+                LogUtils.SOCKET.log(Level.FINE, "Registering closed channel", e);
+            }
+        });
+    }
+
+    @TruffleBoundary
+    void arm(final SelectableChannel channel, final int ops) {
+        submit(() -> {
+            final SelectionKey key = channel.keyFor(selector);
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | ops);
+            }
+        });
+    }
+
+    /* Hands a registered channel over to another socket (e.g. after accept). */
+    @TruffleBoundary
+    void reattach(final SelectableChannel channel, final SqueakSocket socket, final int interestOps) {
+        submit(() -> {
+            final SelectionKey key = channel.keyFor(selector);
+            if (key != null && key.isValid()) {
+                key.attach(socket);
+                key.interestOps(interestOps);
+            }
+        });
+    }
+
+    /* Closed channels are deregistered by the next selection. */
+    @TruffleBoundary
+    synchronized void wakeup() {
+        if (!isShutdown) {
+            selector.wakeup();
+        }
+    }
+
+    /* Changes are dropped once the reactor is shut down, its selector is closed then. */
+    private synchronized void submit(final Runnable change) {
+        if (!isShutdown) {
+            pendingChanges.add(change);
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!isShutdown) {
+                select();
+            }
+        } finally {
+            pendingChanges.clear();
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                LogUtils.SOCKET.log(Level.FINE, "Closing socket reactor failed", e);
+            }
+        }
+    }
+
+    private void select() {
+        try {
+            selector.select();
+            Runnable change;
+            while ((change = pendingChanges.poll()) != null) {
+                change.run();
+            }
+            final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                final SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    final int readyOps = key.readyOps();
+                    key.interestOps(key.interestOps() & ~readyOps);
+                    ((SqueakSocket) key.attachment()).onReady(readyOps);
+                } catch (final CancelledKeyException e) {
+                    continue; // Channel closed in the meantime.
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            LogUtils.SOCKET.log(Level.WARNING, "Socket reactor failed to select", e);
+        }
+    }
+}
@@ -11,14 +11,14 @@ import java.net.SocketAddress;
 import java.net.SocketOption;
 import java.nio.ByteBuffer;
 import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.util.Iterator;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
 import de.hpi.swa.trufflesqueak.exceptions.SqueakExceptions.SqueakException;
+import de.hpi.swa.trufflesqueak.util.InterruptHandlerState;
 import de.hpi.swa.trufflesqueak.util.LogUtils;
 
 public abstract class SqueakSocket {
@@ -42,22 +42,32 @@ public abstract class SqueakSocket {
         }
     }
 
-    protected final Selector selector;
+    protected final SocketReactor reactor;
+    protected final InterruptHandlerState interrupt;
+    private final int semaphoreIndex;
+    private final int readSemaphoreIndex;
+    private final int writeSemaphoreIndex;
+    /* Operations the channels are ready for, set by the reactor and consumed by primitives. */
+    private final AtomicInteger readyOps = new AtomicInteger();
 
     protected boolean listening;
 
-    /*
-     * TODO: Boundary does not seem to be needed on JDK11 and macOS/Linux. Split once TruffleSqueak
-     * has JDK-specific packages.
-     */
     @TruffleBoundary
-    protected SqueakSocket() throws IOException {
-        selector = Selector.open();
+    protected SqueakSocket(final InterruptHandlerState interrupt, final SocketReactor reactor, final int semaphoreIndex, final int readSemaphoreIndex, final int writeSemaphoreIndex) throws IOException {
+        reactor.start();
+        this.reactor = reactor;
+        this.interrupt = interrupt;
+        this.semaphoreIndex = semaphoreIndex;
+        this.readSemaphoreIndex = readSemaphoreIndex;
+        this.writeSemaphoreIndex = writeSemaphoreIndex;
         listening = false;
     }
 
     protected abstract NetworkChannel asNetworkChannel();
 
+    /* Channel that data is sent on and received from, `null` if there is none (yet). */
+    protected abstract SelectableChannel dataChannel();
+
     protected abstract byte[] getLocalAddress() throws IOException;
 
     protected abstract long getLocalPort() throws IOException;
@@ -72,64 +82,103 @@ public abstract class SqueakSocket {
 
     protected abstract void listenOn(long port, long backlogSize) throws IOException;
 
-    protected abstract SqueakSocket accept() throws IOException;
+    protected abstract SqueakSocket accept(int newSemaphoreIndex, int newReadSemaphoreIndex, int newWriteSemaphoreIndex) throws IOException;
 
-    protected abstract boolean isSendDone() throws IOException;
+    /* Called on the reactor thread. */
+    final void onReady(final int ops) {
+        readyOps.getAndUpdate(current -> current | ops);
+        if ((ops & (SelectionKey.OP_ACCEPT | SelectionKey.OP_CONNECT)) != 0) {
+            signal(semaphoreIndex);
+        }
+        if ((ops & SelectionKey.OP_READ) != 0) {
+            signal(readSemaphoreIndex);
+        }
+        if ((ops & SelectionKey.OP_WRITE) != 0) {
+            signal(writeSemaphoreIndex);
+        }
+    }
 
-    @TruffleBoundary
-    protected final long sendData(final byte[] data, final int start, final int count) throws IOException {
-        final ByteBuffer buffer = ByteBuffer.wrap(data, start, count);
-        selector.selectNow();
-        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-        while (keys.hasNext()) {
-            final SelectionKey key = keys.next();
-            if (key.isWritable()) {
-                final long written = sendDataTo(buffer, key);
-                LogUtils.SOCKET.finer(() -> this + " written: " + written);
-                keys.remove();
-                return written;
-            }
+    private void signal(final int index) {
+        if (index > 0) {
+            interrupt.signalSemaphoreWithIndex(index);
         }
+    }
+
+    protected final boolean isReady(final int op) throws IOException {
+        reactor.ensureRunning();
+        return (readyOps.get() & op) != 0;
+    }
 
-        throw new IOException("No writable key found");
+    protected final void setReady(final int op) {
+        readyOps.getAndUpdate(current -> current | op);
     }
 
-    protected abstract long sendDataTo(ByteBuffer data, SelectionKey key) throws IOException;
+    protected final void clearReady(final int ops) {
+        readyOps.getAndUpdate(current -> current & ~ops);
+    }
+
+    /* Forgets the readiness and asks the reactor to report when the channel is ready again. */
+    protected final void rearm(final SelectableChannel channel, final int op) {
+        clearReady(op);
+        reactor.arm(channel, op);
+    }
+
+    /* A new data channel can be written to and is watched for incoming data. */
+    protected final void dataChannelEstablished(final SelectableChannel channel) {
+        setReady(SelectionKey.OP_WRITE);
+        rearm(channel, SelectionKey.OP_READ);
+    }
 
     @TruffleBoundary
-    protected final boolean isDataAvailable() throws IOException {
-        selector.selectNow();
-        final Set<SelectionKey> keys = selector.selectedKeys();
-        for (final SelectionKey key : keys) {
-            if (key.isReadable()) {
-                LogUtils.SOCKET.finer(() -> this + " data available");
-                return true;
-            }
+    protected final boolean isSendDone() throws IOException {
+        return dataChannel() == null || isReady(SelectionKey.OP_WRITE);
+    }
+
+    @TruffleBoundary
+    protected final long sendData(final byte[] data, final int start, final int count) throws IOException {
+        final SelectableChannel channel = dataChannel();
+        if (channel == null) {
+            throw new IOException("Socket not connected");
         }
+        final long written = sendDataTo(ByteBuffer.wrap(data, start, count));
+        LogUtils.SOCKET.finer(() -> this + " written: " + written);
+        if (written < count) {
+            rearm(channel, SelectionKey.OP_WRITE);
+        }
+        return written;
+    }
+
+    protected abstract long sendDataTo(ByteBuffer data) throws IOException;
 
-        LogUtils.SOCKET.finer(() -> this + " no data available");
-        return false;
+    @TruffleBoundary
+    protected final boolean isDataAvailable() throws IOException {
+        final boolean available = dataChannel() != null && isReady(SelectionKey.OP_READ);
+        LogUtils.SOCKET.finer(() -> this + (available ? " data available" : " no data available"));
+        return available;
     }
 
     @TruffleBoundary
     protected final long receiveData(final byte[] data, final int start, final int count) throws IOException {
+        final SelectableChannel channel = dataChannel();
+        if (channel == null) {
+            return 0;
+        }
         final ByteBuffer buffer = ByteBuffer.wrap(data, start, count);
-        selector.selectNow();
-        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-        while (keys.hasNext()) {
-            final SelectionKey key = keys.next();
-
-            if (key.isReadable()) {
-                final long received = receiveDataFrom(key, buffer);
-                LogUtils.SOCKET.finer(() -> this + " received: " + received);
-                keys.remove();
-                return received;
-            }
+        final long received = receiveDataFrom(buffer);
+        if (received < 0) {
+            LogUtils.SOCKET.finer(() -> this + " reached end of stream");
+            /* The channel stays readable at the end of the stream, so it is no longer watched. */
+            clearReady(SelectionKey.OP_READ);
+            return 0;
         }
-        return 0;
+        LogUtils.SOCKET.finer(() -> this + " received: " + received);
+        /* The reactor reports right away if more data is available. */
+        rearm(channel, SelectionKey.OP_READ);
+        return received;
     }
 
-    protected abstract long receiveDataFrom(SelectionKey key, ByteBuffer data) throws IOException;
+    /* Answers -1 at the end of the stream. */
+    protected abstract long receiveDataFrom(ByteBuffer data) throws IOException;
 
     protected final boolean supportsOption(final String name) {
         return asNetworkChannel().supportedOptions().stream().anyMatch(o -> o.name().equals(name));
@@ -162,7 +211,7 @@ public abstract class SqueakSocket {
 
     @TruffleBoundary
     protected void close() throws IOException {
-        selector.close();
+        reactor.wakeup();
     }
 
     protected static InetSocketAddress castAddress(final SocketAddress address) {
@@ -11,28 +11,22 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.NetworkChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.Iterator;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
+import de.hpi.swa.trufflesqueak.util.InterruptHandlerState;
 import de.hpi.swa.trufflesqueak.util.LogUtils;
 
 final class SqueakTCPSocket extends SqueakSocket {
     private SocketChannel clientChannel;
     private ServerSocketChannel serverChannel;
 
-    protected SqueakTCPSocket() throws IOException {
-        super();
-    }
-
-    private SqueakTCPSocket(final SocketChannel clientChannel) throws IOException {
-        super();
-        this.clientChannel = clientChannel;
-        this.clientChannel.configureBlocking(false);
-        this.clientChannel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    protected SqueakTCPSocket(final InterruptHandlerState interrupt, final SocketReactor reactor, final int semaphoreIndex, final int readSemaphoreIndex, final int writeSemaphoreIndex) throws IOException {
+        super(interrupt, reactor, semaphoreIndex, readSemaphoreIndex, writeSemaphoreIndex);
     }
 
     @Override
@@ -40,6 +34,11 @@ final class SqueakTCPSocket extends SqueakSocket {
         return listening ? serverChannel : clientChannel;
     }
 
+    @Override
+    protected SelectableChannel dataChannel() {
+        return clientChannel != null && clientChannel.isConnected() ? clientChannel : null;
+    }
+
     @Override
     @TruffleBoundary
     protected byte[] getLocalAddress() throws IOException {
@@ -88,10 +87,6 @@ final class SqueakTCPSocket extends SqueakSocket {
     @Override
     @TruffleBoundary
     protected Status getStatus() throws IOException {
-        if (selector.isOpen()) {
-            selector.selectNow();
-        }
-
         final Status status = listening ? serverStatus() : clientStatus();
         LogUtils.SOCKET.finer(() -> this + " " + status);
         return status;
@@ -102,18 +97,16 @@ final class SqueakTCPSocket extends SqueakSocket {
             return Status.Connected;
         }
 
-        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-        while (keys.hasNext()) {
-            if (keys.next().isAcceptable()) {
-                clientChannel = serverChannel.accept();
-                clientChannel.configureBlocking(false);
-                clientChannel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-                keys.remove();
-                return Status.Connected;
-            }
+        final SocketChannel accepted = serverChannel.accept();
+        if (accepted == null) {
+            rearm(serverChannel, SelectionKey.OP_ACCEPT);
+            return Status.WaitingForConnection;
         }
-
-        return Status.WaitingForConnection;
+        accepted.configureBlocking(false);
+        clientChannel = accepted;
+        reactor.register(clientChannel, this, 0);
+        dataChannelEstablished(clientChannel);
+        return Status.Connected;
     }
 
     private Status clientStatus() throws IOException {
@@ -121,7 +114,13 @@ final class SqueakTCPSocket extends SqueakSocket {
             return Status.Unconnected;
         }
 
-        maybeCompleteConnection();
+        if (clientChannel.isConnectionPending()) {
+            if (!clientChannel.finishConnect()) {
+                rearm(clientChannel, SelectionKey.OP_CONNECT);
+                return Status.WaitingForConnection;
+            }
+            dataChannelEstablished(clientChannel);
+        }
         final Socket socket = clientChannel.socket();
 
         if (socket.isInputShutdown()) {
@@ -143,19 +142,17 @@ final class SqueakTCPSocket extends SqueakSocket {
         return Status.Connected;
     }
 
-    private void maybeCompleteConnection() throws IOException {
-        while (clientChannel.isConnectionPending()) {
-            clientChannel.finishConnect();
-        }
-    }
-
     @Override
     @TruffleBoundary
     protected void connectTo(final String address, final long port) throws IOException {
         clientChannel = SocketChannel.open();
         clientChannel.configureBlocking(false);
-        clientChannel.register(selector, SelectionKey.OP_CONNECT | SelectionKey.OP_WRITE | SelectionKey.OP_READ);
-        clientChannel.connect(new InetSocketAddress(address, (int) port));
+        reactor.register(clientChannel, this, 0);
+        if (clientChannel.connect(new InetSocketAddress(address, (int) port))) {
+            dataChannelEstablished(clientChannel);
+        } else {
+            rearm(clientChannel, SelectionKey.OP_CONNECT);
+        }
     }
 
     @Override
@@ -165,16 +162,20 @@ final class SqueakTCPSocket extends SqueakSocket {
         serverChannel = ServerSocketChannel.open();
         serverChannel.configureBlocking(false);
         serverChannel.bind(new InetSocketAddress((int) port), (int) backlogSize);
-        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        reactor.register(serverChannel, this, SelectionKey.OP_ACCEPT);
     }
 
     @Override
     @TruffleBoundary
-    protected SqueakSocket accept() throws IOException {
+    protected SqueakSocket accept(final int newSemaphoreIndex, final int newReadSemaphoreIndex, final int newWriteSemaphoreIndex) throws IOException {
         if (listening && clientChannel != null) {
-            clientChannel.keyFor(selector).cancel();
-            final SqueakSocket created = new SqueakTCPSocket(clientChannel);
+            final SqueakTCPSocket created = new SqueakTCPSocket(interrupt, reactor, newSemaphoreIndex, newReadSemaphoreIndex, newWriteSemaphoreIndex);
+            created.clientChannel = clientChannel;
             clientChannel = null;
+            clearReady(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            created.setReady(SelectionKey.OP_WRITE);
+            reactor.reattach(created.clientChannel, created, SelectionKey.OP_READ);
+            rearm(serverChannel, SelectionKey.OP_ACCEPT);
             return created;
         }
 
@@ -183,31 +184,17 @@ final class SqueakTCPSocket extends SqueakSocket {
 
     @Override
     @TruffleBoundary
-    protected boolean isSendDone() throws IOException {
-        selector.selectNow();
-        return selector.selectedKeys().stream().anyMatch(SelectionKey::isWritable);
+    protected long sendDataTo(final ByteBuffer data) throws IOException {
+        return clientChannel.write(data);
     }
 
     @Override
     @TruffleBoundary
-    protected long sendDataTo(final ByteBuffer data, final SelectionKey key) throws IOException {
-        final SocketChannel channel = (SocketChannel) key.channel();
-        if (!channel.isConnected()) {
-            throw new IOException("Client not connected");
-        }
-        return channel.write(data);
-    }
-
-    @Override
-    @TruffleBoundary
-    protected long receiveDataFrom(final SelectionKey key, final ByteBuffer data) throws IOException {
-        final SocketChannel channel = (SocketChannel) key.channel();
-        final long read = channel.read(data);
+    protected long receiveDataFrom(final ByteBuffer data) throws IOException {
+        final long read = clientChannel.read(data);
 
         if (read == -1) {
-            channel.shutdownInput();
-            key.cancel();
-            return 0;
+            clientChannel.shutdownInput();
         }
 
         return read;
@@ -216,12 +203,12 @@ final class SqueakTCPSocket extends SqueakSocket {
     @Override
     @TruffleBoundary
     protected void close() throws IOException {
-        super.close();
         if (serverChannel != null) {
             serverChannel.close();
         }
         if (clientChannel != null) {
             clientChannel.close();
         }
+        super.close();
     }
 }
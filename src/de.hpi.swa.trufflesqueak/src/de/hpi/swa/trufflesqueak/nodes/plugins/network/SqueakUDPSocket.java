@@ -11,16 +11,18 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.NetworkChannel;
-import java.nio.channels.SelectionKey;
+import java.nio.channels.SelectableChannel;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
+import de.hpi.swa.trufflesqueak.util.InterruptHandlerState;
+
 final class SqueakUDPSocket extends SqueakSocket {
 
     private final DatagramChannel channel;
 
-    SqueakUDPSocket() throws IOException {
-        super();
+    SqueakUDPSocket(final InterruptHandlerState interrupt, final SocketReactor reactor, final int semaphoreIndex, final int readSemaphoreIndex, final int writeSemaphoreIndex) throws IOException {
+        super(interrupt, reactor, semaphoreIndex, readSemaphoreIndex, writeSemaphoreIndex);
         channel = DatagramChannel.open();
         channel.configureBlocking(false);
     }
@@ -30,6 +32,11 @@ final class SqueakUDPSocket extends SqueakSocket {
         return channel;
     }
 
+    @Override
+    protected SelectableChannel dataChannel() {
+        return listening || channel.isConnected() ? channel : null;
+    }
+
     @Override
     @TruffleBoundary
     protected byte[] getLocalAddress() throws IOException {
@@ -88,8 +95,9 @@ final class SqueakUDPSocket extends SqueakSocket {
     @Override
     @TruffleBoundary
     protected void connectTo(final String address, final long port) throws IOException {
-        channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
         channel.connect(new InetSocketAddress(address, (int) port));
+        reactor.register(channel, this, 0);
+        dataChannelEstablished(channel);
     }
 
     @Override
@@ -97,39 +105,34 @@ final class SqueakUDPSocket extends SqueakSocket {
     protected void listenOn(final long port, final long backlogSize) throws IOException {
         listening = true;
         channel.bind(new InetSocketAddress((int) port));
-        channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        reactor.register(channel, this, 0);
+        dataChannelEstablished(channel);
     }
 
     @Override
     @TruffleBoundary
-    protected SqueakSocket accept() {
+    protected SqueakSocket accept(final int newSemaphoreIndex, final int newReadSemaphoreIndex, final int newWriteSemaphoreIndex) {
         throw new UnsupportedOperationException("accept() on UDP socket");
     }
 
-    @Override
-    protected boolean isSendDone() {
-        return true;
-    }
-
     @Override
     @TruffleBoundary
-    protected long sendDataTo(final ByteBuffer data, final SelectionKey key) throws IOException {
-        final DatagramChannel to = (DatagramChannel) key.channel();
-        return to.send(data, to.getRemoteAddress());
+    protected long sendDataTo(final ByteBuffer data) throws IOException {
+        return channel.send(data, channel.getRemoteAddress());
     }
 
     @Override
     @TruffleBoundary
-    protected long receiveDataFrom(final SelectionKey key, final ByteBuffer data) throws IOException {
-        final DatagramChannel from = (DatagramChannel) key.channel();
-        from.receive(data);
-        return data.position();
+    protected long receiveDataFrom(final ByteBuffer data) throws IOException {
+        final int start = data.position();
+        channel.receive(data);
+        return data.position() - start;
     }
 
     @Override
     @TruffleBoundary
     protected void close() throws IOException {
-        super.close();
         channel.close();
+        super.close();
     }
 }
@@ -59,7 +59,7 @@ import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.TernaryPrim
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.UnaryPrimitive;
 import de.hpi.swa.trufflesqueak.nodes.primitives.PrimitiveInterfaces.UnaryPrimitiveWithoutFallback;
 import de.hpi.swa.trufflesqueak.nodes.primitives.SqueakPrimitive;
-import de.hpi.swa.trufflesqueak.util.ArrayUtils;
+import de.hpi.swa.trufflesqueak.util.ForwardingTable;
 import de.hpi.swa.trufflesqueak.util.FrameAccess;
 import de.hpi.swa.trufflesqueak.util.NotProvided;
 import de.hpi.swa.trufflesqueak.util.ObjectGraphUtils;
@@ -83,16 +83,21 @@ public final class StoragePrimitives extends AbstractPrimitiveFactoryHolder {
             final Object[] toPointers = toArray.getObjectStorage();
             // Need to operate on copy of `fromPointers` because itself will also be changed.
             final Object[] fromPointersClone = fromPointers.clone();
-            ObjectGraphUtils.pointersBecomeOneWay(image, fromPointersClone, toPointers, copyHash);
-            patchTruffleFrames(fromPointersClone, toPointers, copyHash);
-            image.flushMethodCacheAfterBecome();
+            final ForwardingTable table = new ForwardingTable(fromPointersClone, toPointers);
+            table.copyHashes(copyHash);
+            ObjectGraphUtils.pointersBecomeOneWay(image, table);
+            patchTruffleFrames(table);
+            image.flushMethodCacheAfterBecome(fromPointersClone, toPointers);
+            if (image.instanceRegistry != null) {
+                /* Replaced objects are gone and forwarded classes may have gained instances. */
+                image.instanceRegistry.invalidateAfterBecome(fromPointersClone);
+                image.instanceRegistry.invalidateAfterBecome(toPointers);
+            }
             return fromArray;
         }
 
         @TruffleBoundary
-        private static void patchTruffleFrames(final Object[] fromPointers, final Object[] toPointers, final boolean copyHash) {
-            final int fromPointersLength = fromPointers.length;
-
+        private static void patchTruffleFrames(final ForwardingTable table) {
             Truffle.getRuntime().iterateFrames((frameInstance) -> {
                 final Frame current = frameInstance.getFrame(FrameInstance.FrameAccess.READ_WRITE);
                 if (!FrameAccess.isTruffleSqueakFrame(current)) {
@@ -101,30 +106,22 @@ public final class StoragePrimitives extends AbstractPrimitiveFactoryHolder {
                 final Object[] arguments = current.getArguments();
                 for (int i = 0; i < arguments.length; i++) {
                     final Object argument = arguments[i];
-                    for (int j = 0; j < fromPointersLength; j++) {
-                        final Object fromPointer = fromPointers[j];
-                        if (argument == fromPointer) {
-                            final Object toPointer = toPointers[j];
-                            arguments[i] = toPointer;
-                            AbstractSqueakObjectWithHash.copyHash(fromPointer, toPointer, copyHash);
-                        } else if (argument instanceof AbstractSqueakObjectWithHash) {
-                            ((AbstractSqueakObjectWithHash) argument).pointersBecomeOneWay(fromPointers, toPointers, copyHash);
-                        }
+                    final Object forwarded = table.forward(argument);
+                    if (forwarded != argument) {
+                        arguments[i] = forwarded;
+                    } else if (argument instanceof AbstractSqueakObjectWithHash) {
+                        ((AbstractSqueakObjectWithHash) argument).pointersBecomeOneWay(table);
                     }
                 }
 
                 final CompiledCodeObject blockOrMethod = FrameAccess.getBlockOrMethod(current);
                 final ContextObject context = FrameAccess.getContext(current, blockOrMethod);
                 if (context != null) {
-                    for (int j = 0; j < fromPointersLength; j++) {
-                        final Object fromPointer = fromPointers[j];
-                        if (context == fromPointer) {
-                            final Object toPointer = toPointers[j];
-                            FrameAccess.setContext(current, blockOrMethod, (ContextObject) toPointer);
-                            AbstractSqueakObjectWithHash.copyHash(fromPointer, toPointer, copyHash);
-                        } else {
-                            context.pointersBecomeOneWay(fromPointers, toPointers, copyHash);
-                        }
+                    final Object forwarded = table.forward(context);
+                    if (forwarded != context) {
+                        FrameAccess.setContext(current, blockOrMethod, (ContextObject) forwarded);
+                    } else {
+                        context.pointersBecomeOneWay(table);
                     }
                 }
 
@@ -138,16 +135,12 @@ public final class StoragePrimitives extends AbstractPrimitiveFactoryHolder {
                     }
                     if (current.isObject(slot)) {
                         final Object stackObject = FrameUtil.getObjectSafe(current, slot);
-                        for (int j = 0; j < fromPointersLength; j++) {
-                            final Object fromPointer = fromPointers[j];
-                            if (stackObject == fromPointer) {
-                                final Object toPointer = toPointers[j];
-                                assert toPointer != null : "Unexpected `null` value";
-                                current.setObject(slot, toPointer);
-                                AbstractSqueakObjectWithHash.copyHash(fromPointer, toPointer, copyHash);
-                            } else if (stackObject instanceof AbstractSqueakObjectWithHash) {
-                                ((AbstractSqueakObjectWithHash) stackObject).pointersBecomeOneWay(fromPointers, toPointers, copyHash);
-                            }
+                        final Object forwarded = table.forward(stackObject);
+                        if (forwarded != stackObject) {
+                            assert forwarded != null : "Unexpected `null` value";
+                            current.setObject(slot, forwarded);
+                        } else if (stackObject instanceof AbstractSqueakObjectWithHash) {
+                            ((AbstractSqueakObjectWithHash) stackObject).pointersBecomeOneWay(table);
                         }
                     }
                 }
@@ -388,7 +381,11 @@ public final class StoragePrimitives extends AbstractPrimitiveFactoryHolder {
                     throw PrimitiveFailed.GENERIC_ERROR;
                 }
             }
-            image.flushMethodCacheAfterBecome();
+            image.flushMethodCacheAfterBecome(lefts, rights);
+            if (image.instanceRegistry != null) {
+                image.instanceRegistry.invalidateAfterBecome(lefts);
+                image.instanceRegistry.invalidateAfterBecome(rights);
+            }
             return receiver;
         }
 
@@ -556,7 +553,7 @@ public final class StoragePrimitives extends AbstractPrimitiveFactoryHolder {
         @Specialization
         protected static final ArrayObject doAll(@SuppressWarnings("unused") final Object receiver,
                         @CachedContext(SqueakLanguage.class) final SqueakImageContext image) {
-            return image.asArrayOfObjects(ArrayUtils.toArray(ObjectGraphUtils.allInstances(image)));
+            return image.asArrayOfObjects(ObjectGraphUtils.allObjects(image));
         }
     }
 
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.util;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import de.hpi.swa.trufflesqueak.model.AbstractSqueakObjectWithHash;
+
+/**
+ * Forwards the objects replaced by a one-way become: to their replacements. Every object visited
+ * during become: resolves each of its pointers with a single lookup, so that the cost of become:
+ * no longer grows with the product of heap size and the number of objects become'd at once (e.g.
+ * when instances are migrated to a new class). Few objects are looked up linearly, many through an
+ * identity hash map. Like the pointer-by-pointer replacement it replaces, an object that is
+ * forwarded to another forwarded object at a later index is forwarded again.
+ */
+public final class ForwardingTable {
+    private static final int LINEAR_LOOKUP_LIMIT = 8;
+
+    private final Object[] from;
+    private final Object[] to;
+    /* Indices into `from` for each replaced object in ascending order, `null` for linear lookup. */
+    private final IdentityHashMap<Object, int[]> indices;
+
+    public ForwardingTable(final Object[] from, final Object[] to) {
+        assert from.length == to.length;
+        this.from = from;
+        this.to = to;
+        if (from.length <= LINEAR_LOOKUP_LIMIT) {
+            indices = null;
+        } else {
+            indices = new IdentityHashMap<>(from.length);
+            for (int i = 0; i < from.length; i++) {
+                final int[] existing = indices.get(from[i]);
+                if (existing == null) {
+                    indices.put(from[i], new int[]{i});
+                } else {
+                    final int[] extended = Arrays.copyOf(existing, existing.length + 1);
+                    extended[existing.length] = i;
+                    indices.put(from[i], extended);
+                }
+            }
+        }
+    }
+
+    public Object[] getFromPointers() {
+        return from;
+    }
+
+    public Object[] getToPointers() {
+        return to;
+    }
+
+    /* Copies hashes in order, so that chained replacements behave as if copied pointer by pointer. */
+    public void copyHashes(final boolean copyHash) {
+        if (copyHash) {
+            for (int i = 0; i < from.length; i++) {
+                AbstractSqueakObjectWithHash.copyHash(from[i], to[i], true);
+            }
+        }
+    }
+
+    /* Returns the replacement of `pointer`, or `pointer` itself if it is not forwarded. */
+    public Object forward(final Object pointer) {
+        if (indices == null) {
+            Object result = pointer;
+            for (int i = 0; i < from.length; i++) {
+                if (from[i] == result) {
+                    result = to[i];
+                }
+            }
+            return result;
+        }
+        Object result = pointer;
+        int lastIndex = -1;
+        int[] candidates;
+        while ((candidates = indices.get(result)) != null) {
+            final int nextIndex = firstIndexAfter(candidates, lastIndex);
+            if (nextIndex < 0) {
+                break;
+            }
+            result = to[nextIndex];
+            lastIndex = nextIndex;
+        }
+        return result;
+    }
+
+    /* Replaces all forwarded pointers in `pointers`, only writing slots that actually change. */
+    public void forwardAll(final Object[] pointers) {
+        for (int i = 0; i < pointers.length; i++) {
+            final Object pointer = pointers[i];
+            final Object forwarded = forward(pointer);
+            if (forwarded != pointer) {
+                pointers[i] = forwarded;
+            }
+        }
+    }
+
+    private static int firstIndexAfter(final int[] candidates, final int index) {
+        for (final int candidate : candidates) {
+            if (candidate > index) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+}
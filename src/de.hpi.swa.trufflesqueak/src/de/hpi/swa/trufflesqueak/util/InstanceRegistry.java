@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.AbstractSqueakObject;
+import de.hpi.swa.trufflesqueak.model.AbstractSqueakObjectWithHash;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.NilObject;
+
+/**
+ * Weak per-class index of instances for allInstances and someInstance. The instances of a class
+ * are collected with a full trace on the first request and are then kept up to date on
+ * allocation. The index is stored on the class itself, so allocating instances of classes that
+ * have never been enumerated only costs a field read. Only classes whose instances are exclusively
+ * created through instantiation and copying (not by the VM itself) are indexed. Classes are dropped
+ * from the index whenever objects may have changed their class, and instances that are no longer
+ * reachable are reported until they have been garbage collected.
+ */
+public final class InstanceRegistry {
+    private static final int MIN_COMPACTION_THRESHOLD = 1024;
+
+    private final SqueakImageContext image;
+
+    public InstanceRegistry(final SqueakImageContext image) {
+        this.image = image;
+    }
+
+    /* Instances of a single class, may be registered from multiple threads. */
+    public static final class Instances {
+        private final ArrayList<WeakReference<AbstractSqueakObjectWithHash>> references = new ArrayList<>();
+        private int compactionThreshold = MIN_COMPACTION_THRESHOLD;
+
+        private Instances() {
+        }
+
+        @TruffleBoundary
+        private synchronized void add(final AbstractSqueakObjectWithHash object) {
+            references.add(new WeakReference<>(object));
+            if (references.size() >= compactionThreshold) {
+                references.removeIf(reference -> reference.get() == null);
+                compactionThreshold = Math.max(MIN_COMPACTION_THRESHOLD, 2 * references.size());
+            }
+        }
+
+        /* Adds traced instances that have not been registered while tracing. */
+        private synchronized void addTraced(final Object[] objects) {
+            final Set<Object> registered = Collections.newSetFromMap(new IdentityHashMap<>(references.size()));
+            for (final WeakReference<AbstractSqueakObjectWithHash> reference : references) {
+                registered.add(reference.get());
+            }
+            for (final Object object : objects) {
+                if (!registered.contains(object)) {
+                    references.add(new WeakReference<>((AbstractSqueakObjectWithHash) object));
+                }
+            }
+            compactionThreshold = Math.max(MIN_COMPACTION_THRESHOLD, 2 * references.size());
+        }
+
+        private synchronized Object[] toArray(final ClassObject classObject, final boolean firstOnly) {
+            final ArrayList<Object> result = new ArrayList<>(firstOnly ? 1 : references.size());
+            for (final WeakReference<AbstractSqueakObjectWithHash> reference : references) {
+                final AbstractSqueakObjectWithHash object = reference.get();
+                /* Instances may have been migrated to another class (e.g. by become:). */
+                if (object != null && object.getSqueakClass() == classObject) {
+                    result.add(object);
+                    if (firstOnly) {
+                        break;
+                    }
+                }
+            }
+            return result.toArray();
+        }
+    }
+
+    public boolean canTrack(final ClassObject classObject) {
+        if (classObject == image.pointClass || classObject == image.messageClass || classObject.isNilClass()) {
+            return false; /* Instances are (also) created by the VM. */
+        } else if (classObject.isZeroSized() || classObject.isWeak()) {
+            return true;
+        } else if (classObject.isNonIndexableWithInstVars()) {
+            return !classObject.isMetaClass() && !classObject.instancesAreClasses();
+        } else if (classObject.isIndexableWithInstVars()) {
+            return !classObject.isMethodContextClass() && !classObject.isBlockClosureClass();
+        } else {
+            return false;
+        }
+    }
+
+    public static void register(final AbstractSqueakObjectWithHash object) {
+        final Instances instances = object.getSqueakClass().getRegisteredInstances();
+        if (instances != null) {
+            instances.add(object);
+        }
+    }
+
+    @TruffleBoundary
+    public Object[] allInstancesOf(final ClassObject classObject) {
+        assert canTrack(classObject);
+        return getOrTraceInstances(classObject).toArray(classObject, false);
+    }
+
+    @TruffleBoundary
+    public AbstractSqueakObject someInstanceOf(final ClassObject classObject) {
+        assert canTrack(classObject);
+        final Object[] result = getOrTraceInstances(classObject).toArray(classObject, true);
+        return result.length > 0 ? (AbstractSqueakObject) result[0] : NilObject.SINGLETON;
+    }
+
+    /* Instances are registered from the start of the trace, so that none are missed. */
+    private synchronized Instances getOrTraceInstances(final ClassObject classObject) {
+        Instances instances = classObject.getRegisteredInstances();
+        if (instances == null) {
+            instances = new Instances();
+            classObject.setRegisteredInstances(instances);
+            instances.addTraced(ObjectGraphUtils.traceInstancesOf(image, classObject));
+        }
+        return instances;
+    }
+
+    /* Objects may have changed their class and classes may have gained instances. */
+    @TruffleBoundary
+    public void invalidateAfterBecome(final Object[] objects) {
+        for (final Object object : objects) {
+            if (object instanceof AbstractSqueakObjectWithHash) {
+                ((AbstractSqueakObjectWithHash) object).getSqueakClass().setRegisteredInstances(null);
+            }
+            if (object instanceof ClassObject) {
+                ((ClassObject) object).setRegisteredInstances(null);
+            }
+        }
+    }
+
+    @TruffleBoundary
+    public void invalidate(final ClassObject classObject) {
+        classObject.setRegisteredInstances(null);
+    }
+}
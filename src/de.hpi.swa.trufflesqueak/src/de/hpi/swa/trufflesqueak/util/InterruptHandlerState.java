@@ -5,7 +5,7 @@
  */
 package de.hpi.swa.trufflesqueak.util;
 
-import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -24,7 +24,8 @@ public final class InterruptHandlerState {
 
     private final SqueakImageContext image;
     private ScheduledThreadPoolExecutor executor;
-    private final ArrayDeque<Integer> semaphoresToSignal = new ArrayDeque<>();
+    /* Filled by other threads, e.g. for input events or socket readiness. */
+    private final ConcurrentLinkedQueue<Integer> semaphoresToSignal = new ConcurrentLinkedQueue<>();
 
     private boolean isActive = true;
     protected long nextWakeupTick;
@@ -147,12 +148,14 @@ public final class InterruptHandlerState {
         return pendingFinalizationSignals;
     }
 
+    @TruffleBoundary
     protected boolean hasSemaphoresToSignal() {
         return !semaphoresToSignal.isEmpty();
     }
 
-    protected Integer nextSemaphoreToSignal() {
-        return semaphoresToSignal.pollFirst();
+    @TruffleBoundary
+    public Integer nextSemaphoreToSignal() {
+        return semaphoresToSignal.poll();
     }
 
     public static int getInterruptChecksEveryNms() {
@@ -161,7 +164,7 @@ public final class InterruptHandlerState {
 
     @TruffleBoundary
     public void signalSemaphoreWithIndex(final int index) {
-        semaphoresToSignal.addLast(index);
+        semaphoresToSignal.add(index);
     }
 
     public boolean isActiveAndShouldTrigger() {
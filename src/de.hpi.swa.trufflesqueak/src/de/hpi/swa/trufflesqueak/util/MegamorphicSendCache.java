@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.util;
+
+import java.util.Set;
+
+import com.oracle.truffle.api.CompilerAsserts;
+
+import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+
+/**
+ * Lookup cache for a single selector that is shared by all megamorphic send sites of that selector.
+ * Entries are indexed by class index (identity hash of the class), so that different receiver
+ * classes rarely collide. Entries are invalidated through the version stamps of the global method
+ * cache. Each entry is immutable and replaced as a whole, so that concurrent lookups never see a
+ * class together with the result of another class. The cache does not reference its selector,
+ * so that it can be dropped together with the selector.
+ */
+public final class MegamorphicSendCache {
+    private static final int SIZE = 64;
+    private static final int MASK = SIZE - 1;
+
+    private final SqueakImageContext image;
+    private final Entry[] entries = new Entry[SIZE];
+
+    private static final class Entry {
+        private final ClassObject receiverClass;
+        private final Object result;
+        private final long version;
+
+        private Entry(final ClassObject receiverClass, final Object result, final long version) {
+            this.receiverClass = receiverClass;
+            this.result = result;
+            this.version = version;
+        }
+    }
+
+    public MegamorphicSendCache(final SqueakImageContext image) {
+        this.image = image;
+    }
+
+    /* `null` return signals a doesNotUnderstand. */
+    public Object lookup(final ClassObject receiverClass, final NativeObject selector) {
+        final int index = (int) receiverClass.getSqueakHash() & MASK;
+        final Entry entry = entries[index];
+        if (entry != null && entry.receiverClass == receiverClass && entry.version >= image.getMethodCacheValidVersion(selector)) {
+            return entry.result;
+        }
+        final long version = image.getMethodCacheVersion();
+        final Object result = receiverClass.lookupInMethodDictSlow(selector);
+        entries[index] = new Entry(receiverClass, result, version);
+        return result;
+    }
+
+    /* Releases all entries that answer one of methods (an identity set). */
+    public void release(final Set<Object> methods) {
+        for (int i = 0; i < SIZE; i++) {
+            final Entry entry = entries[i];
+            if (entry != null && methods.contains(entry.result)) {
+                entries[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        CompilerAsserts.neverPartOfCompilation();
+        return "MegamorphicSendCache @" + Integer.toHexString(hashCode());
+    }
+}
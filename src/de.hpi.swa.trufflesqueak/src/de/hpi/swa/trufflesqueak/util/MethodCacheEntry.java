@@ -14,6 +14,7 @@ public final class MethodCacheEntry {
     private ClassObject classObject;
     private NativeObject selector;
     private Object result;
+    private long version;
 
     public MethodCacheEntry() {
     }
@@ -30,25 +31,32 @@ public final class MethodCacheEntry {
         return result;
     }
 
-    public void setResult(final Object object) {
-        result = object;
+    public long getVersion() {
+        return version;
     }
 
-    public void freeAndRelease() {
-        selector = null; /* Mark it free. */
-        result = null; /* Release the method. */
+    public void setResult(final Object object) {
+        result = object;
     }
 
-    public MethodCacheEntry reuseFor(final ClassObject lookupClass, final NativeObject lookupSelector) {
+    public MethodCacheEntry reuseFor(final ClassObject lookupClass, final NativeObject lookupSelector, final long currentVersion) {
         classObject = lookupClass;
         selector = lookupSelector;
         result = null;
+        version = currentVersion;
         return this;
     }
 
+    /* Releases class, selector, and result. A released entry never matches a lookup. */
+    public void release() {
+        classObject = null;
+        selector = null;
+        result = null;
+    }
+
     @Override
     public String toString() {
         CompilerAsserts.neverPartOfCompilation();
-        return "MethodCache[" + classObject + "/" + selector + "/" + result + "]" + " @" + Integer.toHexString(hashCode());
+        return "MethodCache[" + classObject + "/" + selector + "/" + result + "/" + version + "]" + " @" + Integer.toHexString(hashCode());
     }
 }
@@ -7,6 +7,10 @@ package de.hpi.swa.trufflesqueak.util;
 
 import java.util.AbstractCollection;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
@@ -50,13 +54,42 @@ public final class ObjectGraphUtils {
         return seen;
     }
 
+    /* Unlike allInstances, the order of objects is only stable if objects are traced sequentially. */
     @TruffleBoundary
-    public static void pointersBecomeOneWay(final SqueakImageContext image, final Object[] fromPointers, final Object[] toPointers, final boolean copyHash) {
+    public static Object[] allObjects(final SqueakImageContext image) {
+        if (image.options.parallelObjectTracing) {
+            final ArrayList<AbstractSqueakObjectWithHash> seen = ParallelTracer.trace(image, (object, results) -> {
+                results.add(object);
+                return false;
+            });
+            lastSeenObjects = seen.size();
+            return seen.toArray();
+        } else {
+            return ArrayUtils.toArray(allInstances(image));
+        }
+    }
+
+    @TruffleBoundary
+    public static void pointersBecomeOneWay(final SqueakImageContext image, final ForwardingTable table) {
+        if (image.options.parallelObjectTracing) {
+            /*
+             * Only the scan runs in parallel. Rewriting pointers stays on the calling thread, because
+             * it can change classes (e.g. superclass or method dictionary) and invalidate assumptions.
+             */
+            final ArrayList<AbstractSqueakObjectWithHash> seen = ParallelTracer.trace(image, (object, results) -> {
+                results.add(object);
+                return false;
+            });
+            for (final AbstractSqueakObjectWithHash object : seen) {
+                object.pointersBecomeOneWay(table);
+            }
+            return;
+        }
         final ObjectTracer pending = new ObjectTracer(image);
         AbstractSqueakObjectWithHash currentObject;
         while ((currentObject = pending.getNextPending()) != null) {
             if (currentObject.tryToMark(pending.getCurrentMarkingFlag())) {
-                currentObject.pointersBecomeOneWay(fromPointers, toPointers, copyHash);
+                currentObject.pointersBecomeOneWay(table);
                 pending.tracePointers(currentObject);
             }
         }
@@ -64,6 +97,23 @@ public final class ObjectGraphUtils {
 
     @TruffleBoundary
     public static Object[] allInstancesOf(final SqueakImageContext image, final ClassObject classObj) {
+        final InstanceRegistry registry = image.instanceRegistry;
+        if (registry != null && registry.canTrack(classObj)) {
+            return registry.allInstancesOf(classObj);
+        } else {
+            return traceInstancesOf(image, classObj);
+        }
+    }
+
+    static Object[] traceInstancesOf(final SqueakImageContext image, final ClassObject classObj) {
+        if (image.options.parallelObjectTracing) {
+            return ParallelTracer.trace(image, (object, results) -> {
+                if (classObj == object.getSqueakClass()) {
+                    results.add(object);
+                }
+                return false;
+            }).toArray();
+        }
         final ArrayDeque<AbstractSqueakObjectWithHash> result = new ArrayDeque<>();
         final ObjectTracer pending = new ObjectTracer(image);
         AbstractSqueakObjectWithHash currentObject;
@@ -80,6 +130,20 @@ public final class ObjectGraphUtils {
 
     @TruffleBoundary
     public static AbstractSqueakObject someInstanceOf(final SqueakImageContext image, final ClassObject classObj) {
+        final InstanceRegistry registry = image.instanceRegistry;
+        if (registry != null && registry.canTrack(classObj)) {
+            return registry.someInstanceOf(classObj);
+        }
+        if (image.options.parallelObjectTracing) {
+            final ArrayList<AbstractSqueakObjectWithHash> result = ParallelTracer.trace(image, (object, results) -> {
+                if (classObj == object.getSqueakClass()) {
+                    results.add(object);
+                    return true;
+                }
+                return false;
+            });
+            return result.isEmpty() ? NilObject.SINGLETON : result.get(0);
+        }
         final ObjectTracer pending = new ObjectTracer(image);
         AbstractSqueakObjectWithHash currentObject;
         while ((currentObject = pending.getNextPending()) != null) {
@@ -93,21 +157,108 @@ public final class ObjectGraphUtils {
         return NilObject.SINGLETON;
     }
 
+    @FunctionalInterface
+    private interface ObjectVisitor {
+        /* Called once per reachable object, returns `true` to stop tracing. */
+        boolean visit(AbstractSqueakObjectWithHash object, ArrayList<AbstractSqueakObjectWithHash> results);
+    }
+
+    /**
+     * Work-stealing object graph tracer. Roots are collected on the calling thread, the rest of the
+     * graph is traced by tasks on the common {@link ForkJoinPool} that split off part of their
+     * pending objects whenever they have enough work to share. Objects are marked atomically, so
+     * every reachable object is visited exactly once, but on an arbitrary thread and in no
+     * particular order.
+     */
+    private static final class ParallelTracer {
+        private final boolean currentMarkingFlag;
+        private final ObjectVisitor visitor;
+        private final ConcurrentLinkedQueue<ArrayList<AbstractSqueakObjectWithHash>> results = new ConcurrentLinkedQueue<>();
+        private volatile boolean stopped;
+
+        private ParallelTracer(final boolean currentMarkingFlag, final ObjectVisitor visitor) {
+            this.currentMarkingFlag = currentMarkingFlag;
+            this.visitor = visitor;
+        }
+
+        private static ArrayList<AbstractSqueakObjectWithHash> trace(final SqueakImageContext image, final ObjectVisitor visitor) {
+            final ObjectTracer roots = new ObjectTracer(image);
+            final ParallelTracer tracer = new ParallelTracer(roots.getCurrentMarkingFlag(), visitor);
+            ForkJoinPool.commonPool().invoke(new ParallelTraceTask(tracer, roots.deque));
+            int size = 0;
+            for (final ArrayList<AbstractSqueakObjectWithHash> partialResults : tracer.results) {
+                size += partialResults.size();
+            }
+            final ArrayList<AbstractSqueakObjectWithHash> allResults = new ArrayList<>(size);
+            for (final ArrayList<AbstractSqueakObjectWithHash> partialResults : tracer.results) {
+                allResults.addAll(partialResults);
+            }
+            return allResults;
+        }
+    }
+
+    private static final class ParallelTraceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int BATCH_SIZE = 1 << 10;
+
+        private final transient ParallelTracer tracer;
+        private final transient ArrayDeque<AbstractSqueakObjectWithHash> batch;
+
+        private ParallelTraceTask(final ParallelTracer tracer, final ArrayDeque<AbstractSqueakObjectWithHash> batch) {
+            this.tracer = tracer;
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            final ObjectTracer pending = new ObjectTracer(tracer.currentMarkingFlag, batch);
+            final ArrayList<AbstractSqueakObjectWithHash> results = new ArrayList<>();
+            final ArrayList<ParallelTraceTask> forkedTasks = new ArrayList<>();
+            AbstractSqueakObjectWithHash currentObject;
+            while (!tracer.stopped && (currentObject = pending.getNextPending()) != null) {
+                if (currentObject.tryToMarkAtomically(pending.getCurrentMarkingFlag())) {
+                    if (tracer.visitor.visit(currentObject, results)) {
+                        tracer.stopped = true;
+                    }
+                    pending.tracePointers(currentObject);
+                    if (pending.deque.size() >= 2 * BATCH_SIZE) {
+                        final ParallelTraceTask task = new ParallelTraceTask(tracer, pending.splitOffPending(BATCH_SIZE));
+                        task.fork();
+                        forkedTasks.add(task);
+                    }
+                }
+            }
+            if (!results.isEmpty()) {
+                tracer.results.add(results);
+            }
+            for (final ParallelTraceTask task : forkedTasks) {
+                task.join();
+            }
+        }
+    }
+
     public static final class ObjectTracer {
         /* Power of two, large enough to avoid resizing. */
         private static final int PENDING_INITIAL_SIZE = 1 << 17;
 
         private final boolean currentMarkingFlag;
-        private final ArrayDeque<AbstractSqueakObjectWithHash> deque = new ArrayDeque<>(PENDING_INITIAL_SIZE);
+        private final ArrayDeque<AbstractSqueakObjectWithHash> deque;
 
         private ObjectTracer(final SqueakImageContext image) {
             // Flip the marking flag
             currentMarkingFlag = image.toggleCurrentMarkingFlag();
+            deque = new ArrayDeque<>(PENDING_INITIAL_SIZE);
             // Add roots
             addIfUnmarked(image.specialObjectsArray);
             addObjectsFromTruffleFrames();
         }
 
+        /* For tracing on worker threads of a ParallelTracer. */
+        private ObjectTracer(final boolean currentMarkingFlag, final ArrayDeque<AbstractSqueakObjectWithHash> pending) {
+            this.currentMarkingFlag = currentMarkingFlag;
+            deque = pending;
+        }
+
         private void addObjectsFromTruffleFrames() {
             CompilerAsserts.neverPartOfCompilation();
             Truffle.getRuntime().iterateFrames(frameInstance -> {
@@ -152,6 +303,14 @@ public final class ObjectGraphUtils {
             return deque.pollFirst();
         }
 
+        private ArrayDeque<AbstractSqueakObjectWithHash> splitOffPending(final int count) {
+            final ArrayDeque<AbstractSqueakObjectWithHash> split = new ArrayDeque<>(count);
+            for (int i = 0; i < count; i++) {
+                split.add(deque.pollLast());
+            }
+            return split;
+        }
+
         private void tracePointers(final AbstractSqueakObjectWithHash object) {
             addIfUnmarked(object.getSqueakClass());
             object.tracePointers(this);
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017-2020 Software Architecture Group, Hasso Plattner Institute
+ *
+ * Licensed under the MIT License.
+ */
+package de.hpi.swa.trufflesqueak.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+
+import de.hpi.swa.trufflesqueak.image.SqueakImageContext;
+import de.hpi.swa.trufflesqueak.model.ClassObject;
+import de.hpi.swa.trufflesqueak.model.NativeObject;
+
+/**
+ * VM-side index of byte symbols by their contents. Symbols are hashed and compared directly on
+ * their byte storage, and Java strings (e.g., interop selectors) are hashed character by
+ * character, so lookups never allocate. The index only learns symbols registered by the image or
+ * found by other means, and holds them weakly so that it never keeps unused symbols alive. Since
+ * the image may also create symbols on its own, a miss does not mean that no such symbol exists
+ * and callers fall back to the symbol table of the image.
+ */
+public final class SymbolTable {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final SqueakImageContext image;
+    /* Open addressing with linear probing, cleared references are reused or dropped on resize. */
+    @SuppressWarnings("unchecked") private WeakReference<NativeObject>[] symbols = new WeakReference[INITIAL_CAPACITY];
+    /* Number of used slots, including cleared references. */
+    private int size;
+
+    public SymbolTable(final SqueakImageContext image) {
+        this.image = image;
+    }
+
+    @TruffleBoundary
+    public synchronized NativeObject lookup(final byte[] bytes) {
+        final int mask = symbols.length - 1;
+        for (int i = hash(bytes) & mask;; i = i + 1 & mask) {
+            final WeakReference<NativeObject> reference = symbols[i];
+            if (reference == null) {
+                return null;
+            }
+            final NativeObject symbol = reference.get();
+            if (symbol != null && isSymbol(symbol) && Arrays.equals(symbol.getByteStorage(), bytes)) {
+                return symbol;
+            }
+        }
+    }
+
+    /* Returns `null` for strings that cannot be byte symbols (e.g., with wide characters). */
+    @TruffleBoundary
+    public synchronized NativeObject lookup(final String string) {
+        final int hash = hash(string);
+        if (hash == -1) {
+            return null;
+        }
+        final int mask = symbols.length - 1;
+        for (int i = hash & mask;; i = i + 1 & mask) {
+            final WeakReference<NativeObject> reference = symbols[i];
+            if (reference == null) {
+                return null;
+            }
+            final NativeObject symbol = reference.get();
+            if (symbol != null && isSymbol(symbol) && equals(symbol.getByteStorage(), string)) {
+                return symbol;
+            }
+        }
+    }
+
+    /** Adds a byte symbol to the index. Other objects (e.g., wide symbols) are ignored. */
+    @TruffleBoundary
+    public synchronized void register(final Object object) {
+        if (object instanceof NativeObject && isSymbol((NativeObject) object) && lookup(((NativeObject) object).getByteStorage()) == null) {
+            add((NativeObject) object);
+        }
+    }
+
+    private void add(final NativeObject symbol) {
+        if (2 * (size + 1) > symbols.length) {
+            resize();
+        }
+        final int mask = symbols.length - 1;
+        int i = hash(symbol.getByteStorage()) & mask;
+        while (symbols[i] != null && symbols[i].get() != null) {
+            i = i + 1 & mask;
+        }
+        if (symbols[i] == null) {
+            size++;
+        }
+        symbols[i] = new WeakReference<>(symbol);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize() {
+        final WeakReference<NativeObject>[] oldSymbols = symbols;
+        int numLive = 0;
+        for (final WeakReference<NativeObject> reference : oldSymbols) {
+            if (reference != null && reference.get() != null) {
+                numLive++;
+            }
+        }
+        /* Only grow if most entries are still alive, otherwise rehash to drop cleared ones. */
+        symbols = new WeakReference[4 * numLive > oldSymbols.length ? oldSymbols.length * 2 : oldSymbols.length];
+        size = 0;
+        for (final WeakReference<NativeObject> reference : oldSymbols) {
+            final NativeObject symbol = reference == null ? null : reference.get();
+            if (symbol != null && isSymbol(symbol)) {
+                add(symbol);
+            }
+        }
+    }
+
+    /* Symbols may have changed their class through become:. */
+    private boolean isSymbol(final NativeObject object) {
+        final ClassObject byteSymbolClass = image.getByteSymbolClass();
+        return object.getSqueakClass() == byteSymbolClass && object.isByteType();
+    }
+
+    private static int hash(final byte[] bytes) {
+        int hash = 0;
+        for (final byte b : bytes) {
+            hash = 31 * hash + Byte.toUnsignedInt(b);
+        }
+        return mix(hash);
+    }
+
+    private static int hash(final String string) {
+        int hash = 0;
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c > 0xFF) {
+                return -1;
+            }
+            hash = 31 * hash + c;
+        }
+        return mix(hash);
+    }
+
+    /* Spreads the hash and keeps it non-negative, -1 is reserved for wide strings. */
+    private static int mix(final int hash) {
+        return (hash ^ hash >>> 16) & Integer.MAX_VALUE;
+    }
+
+    private static boolean equals(final byte[] bytes, final String string) {
+        if (bytes.length != string.length()) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (Byte.toUnsignedInt(bytes[i]) != string.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -8,6 +8,7 @@ package de.hpi.swa.trufflesqueak.util;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 
+import de.hpi.swa.trufflesqueak.exceptions.SqueakExceptions.SqueakException;
 import de.hpi.swa.trufflesqueak.model.AbstractPointersObject;
 import de.hpi.swa.trufflesqueak.model.WeakVariablePointersObject.WeakRef;
 import sun.misc.Unsafe;
@@ -36,6 +37,19 @@ public final class UnsafeUtils {
         }
     }
 
+    /* Fails hard, a missing field would otherwise make Unsafe accesses corrupt memory. */
+    public static long getDeclaredFieldAddress(final Class<?> javaClass, final String fieldName) {
+        try {
+            return UNSAFE.objectFieldOffset(javaClass.getDeclaredField(fieldName));
+        } catch (NoSuchFieldException | SecurityException e) {
+            throw SqueakException.create("Unable to find field", fieldName, "in", javaClass, e);
+        }
+    }
+
+    public static boolean compareAndSwapIntAt(final Object object, final long address, final int expected, final int value) {
+        return UNSAFE.compareAndSwapInt(object, address, expected, value);
+    }
+
     public static boolean getBoolAt(final AbstractPointersObject object, final long address) {
         return UNSAFE.getBoolean(object, address);
     }